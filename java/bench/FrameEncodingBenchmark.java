@@ -0,0 +1,106 @@
+package bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import dto.ChatDTO;
+import entity.Chat;
+import entity.Status;
+import entity.User;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import socket.ChatService;
+import socket.EncodedFrame;
+
+/**
+ * Bytes and allocations per delivered new_message: the old path (toJson for
+ * the log and again for the send, per recipient) against one shared
+ * EncodedFrame, with the Chat entity and with the lean ChatDTO payload. Run
+ * with plain java, no database needed:
+ *
+ * java -cp build:gson.jar:... bench.FrameEncodingBenchmark
+ */
+public class FrameEncodingBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ROUNDS = 200_000;
+    private static final int RECIPIENTS = 2;
+
+    private static final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss").create();
+
+    public static void main(String[] args) {
+        Map<String, Object> envelope = sampleEnvelope();
+        Map<String, Object> lean = new HashMap<>(envelope);
+        lean.put("payload", ChatDTO.from((Chat) envelope.get("payload")));
+        PrintStream out = System.out;
+        // the production path logs every frame, keep that cost but not the noise
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            run(out, "per-recipient toJson x2", envelope, false);
+            run(out, "shared EncodedFrame", envelope, true);
+            run(out, "shared frame + ChatDTO", lean, true);
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    private static void run(PrintStream out, String name, Map<String, Object> envelope, boolean shared) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += deliver(envelope, shared);
+        }
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long alloc = mx.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        long bytes = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            bytes += deliver(envelope, shared);
+        }
+        long nanos = System.nanoTime() - start;
+        alloc = mx.getThreadAllocatedBytes(tid) - alloc;
+        out.printf("%-26s %8d ns/msg %8d bytes encoded/msg %8d bytes allocated/msg (%d)%n",
+                name, nanos / ROUNDS, bytes / ROUNDS, alloc / ROUNDS, sink & 1);
+    }
+
+    // Returns the number of UTF-8 bytes produced by the serialiser
+    private static long deliver(Map<String, Object> envelope, boolean shared) {
+        long bytes = 0;
+        if (shared) {
+            EncodedFrame frame = ChatService.encode(envelope);
+            bytes += frame.byteLength();
+        } else {
+            for (int r = 0; r < RECIPIENTS; r++) {
+                System.out.println(GSON.toJson(envelope));
+                String text = GSON.toJson(envelope);
+                bytes += text.getBytes(StandardCharsets.UTF_8).length * 2L;
+            }
+        }
+        return bytes;
+    }
+
+    private static Map<String, Object> sampleEnvelope() {
+        User from = new User("Kasun", "Perera", "94", "719345025");
+        from.setId(12);
+        from.setCreatedAt(new Date());
+        from.setUpdatedAt(new Date());
+        User to = new User("Nimali", "Fernando", "94", "771234567");
+        to.setId(57);
+        to.setCreatedAt(new Date());
+        to.setUpdatedAt(new Date());
+
+        Chat chat = new Chat(from, "Hey, are we still meeting at 6? Let me know 🙂", to, "FILE:", Status.SENT);
+        chat.setId(48213);
+        chat.setCreatedAt(new Date());
+        chat.setUpdatedAt(new Date());
+
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "new_message");
+        envelope.put("payload", chat);
+        return envelope;
+    }
+}
@@ -0,0 +1,90 @@
+package bench;
+
+import entity.Chat;
+import entity.User;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import socket.ChatWriter;
+
+/**
+ * Messages per second through ChatWriter at different batch windows. The
+ * sink stands in for MySQL: every commit costs a fixed fsync plus a little per
+ * row, which is what makes one-commit-per-message the ceiling. Also checks
+ * that each sender's chats come out in the order they were sent. Run with
+ * plain java, no database needed:
+ *
+ * java -cp build:... bench.GroupCommitBenchmark
+ */
+public class GroupCommitBenchmark {
+
+    private static final int SENDERS = 64;
+    private static final long SECONDS = 3;
+    private static final long COMMIT_NANOS = TimeUnit.MICROSECONDS.toNanos(1000);
+    private static final long ROW_NANOS = TimeUnit.MICROSECONDS.toNanos(5);
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-12s %12s %12s %12s%n", "window us", "msgs/sec", "avg batch", "commits");
+        long[] windows = {0, 250, 1000, 2000, 5000};
+        run(0, 1, false); // warm up
+        run(0, 1, true); // one commit per message, the old behaviour
+        for (long window : windows) {
+            run(window, 128, true);
+        }
+    }
+
+    private static void run(long windowMicros, int maxBatch, boolean print) throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+        AtomicInteger rows = new AtomicInteger();
+        int[] lastSeq = new int[SENDERS];
+        ChatWriter writer = new ChatWriter(windowMicros, maxBatch, batch -> {
+            LockSupport.parkNanos(COMMIT_NANOS + ROW_NANOS * batch.size());
+            for (Chat chat : batch) {
+                int sender = chat.getFrom().getId();
+                int seq = Integer.parseInt(chat.getMessage());
+                if (seq != lastSeq[sender] + 1) {
+                    throw new IllegalStateException("sender " + sender + " out of order: " + seq);
+                }
+                lastSeq[sender] = seq;
+                chat.setId(rows.incrementAndGet());
+            }
+            commits.incrementAndGet();
+        });
+        writer.start();
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        CountDownLatch done = new CountDownLatch(SENDERS);
+        for (int i = 0; i < SENDERS; i++) {
+            User from = user(i);
+            User to = user((i + 1) % SENDERS);
+            Thread t = new Thread(() -> {
+                int seq = 0;
+                while (System.nanoTime() < end) {
+                    Chat chat = new Chat();
+                    chat.setFrom(from);
+                    chat.setTo(to);
+                    chat.setMessage(Integer.toString(++seq));
+                    writer.submit(chat).join();
+                }
+                done.countDown();
+            });
+            t.start();
+        }
+        done.await();
+        writer.stop();
+
+        if (!print) {
+            return;
+        }
+        String name = maxBatch == 1 ? "no batching" : Long.toString(windowMicros);
+        System.out.printf("%-12s %12d %12.1f %12d%n", name, rows.get() / SECONDS,
+                rows.get() / (double) Math.max(1, commits.get()), commits.get());
+    }
+
+    private static User user(int id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,164 @@
+package bench;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import dto.ChatDTO;
+import dto.UserDTO;
+import entity.Status;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import socket.BinaryFrameWriter;
+import socket.ChatSummary;
+import socket.FrameDecoder;
+
+/**
+ * JSON text frames against BinaryProtocol frames for the main message types:
+ * frame size, encode cost for server pushes and decode cost for client
+ * frames. Run with plain java, no database needed:
+ *
+ * java -cp build:gson.jar:... bench.ProtocolBenchmark
+ */
+public class ProtocolBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ROUNDS = 100_000;
+
+    // same adapters as ChatService
+    private static final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss")
+            .registerTypeAdapter(ChatDTO.class, new ChatDTO.Adapter())
+            .registerTypeAdapter(UserDTO.class, new UserDTO.Adapter())
+            .registerTypeAdapter(ChatSummary.class, new ChatSummary.Adapter())
+            .create();
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-22s %10s %10s %12s %12s%n", "frame", "json B", "binary B", "json ns", "binary ns");
+        push("new_message", envelope("new_message", chat(1)));
+        push("single_chat x50", envelope("single_chat", chats(50)));
+        push("friend_list x30", envelope("friend_list", summaries(30)));
+        push("all_users x30", envelope("all_users", users(30)));
+
+        Map<String, Object> sendMessage = new LinkedHashMap<>();
+        sendMessage.put("type", "send_message");
+        sendMessage.put("toUserId", 57);
+        sendMessage.put("message", "Hey, are we still meeting at 6?");
+        sendMessage.put("userId", 12);
+        pull("send_message", sendMessage);
+
+        Map<String, Object> getSingleChat = new LinkedHashMap<>();
+        getSingleChat.put("type", "get_single_chat");
+        getSingleChat.put("friendId", 57);
+        getSingleChat.put("userId", 12);
+        pull("get_single_chat", getSingleChat);
+    }
+
+    // Server -> client: encode cost
+    private static void push(String name, Map<String, Object> envelope) {
+        int json = GSON.toJson(envelope).getBytes(StandardCharsets.UTF_8).length;
+        int binary = BinaryFrameWriter.encode(GSON, envelope).length;
+        long jsonNs = time(() -> GSON.toJson(envelope).length());
+        long binaryNs = time(() -> BinaryFrameWriter.encode(GSON, envelope).length);
+        System.out.printf("%-22s %10d %10d %12d %12d%n", name + " (enc)", json, binary, jsonNs, binaryNs);
+    }
+
+    // Client -> server: decode cost
+    private static void pull(String name, Map<String, Object> frame) {
+        String text = GSON.toJson(frame);
+        byte[] bytes = BinaryFrameWriter.encode(GSON, frame);
+        long jsonNs = time(() -> decode(text));
+        long binaryNs = time(() -> decode(bytes));
+        System.out.printf("%-22s %10d %10d %12d %12d%n", name + " (dec)",
+                text.getBytes(StandardCharsets.UTF_8).length, bytes.length, jsonNs, binaryNs);
+    }
+
+    private static int decode(String text) {
+        try {
+            return FrameDecoder.decode(text).hashCode();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int decode(byte[] bytes) {
+        try {
+            return FrameDecoder.decode(ByteBuffer.wrap(bytes)).hashCode();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long time(Supplier<Integer> op) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += op.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += op.get();
+        }
+        return (System.nanoTime() - start) / ROUNDS;
+    }
+
+    private static Map<String, Object> envelope(String type, Object payload) {
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", type);
+        envelope.put("payload", payload);
+        return envelope;
+    }
+
+    private static ChatDTO chat(int i) {
+        ChatDTO chat = new ChatDTO();
+        chat.setId(48000 + i);
+        chat.setFromId(i % 2 == 0 ? 12 : 57);
+        chat.setToId(i % 2 == 0 ? 57 : 12);
+        chat.setMessage("Message number " + i + ", see you later 🙂");
+        chat.setFiles("");
+        chat.setStatus(Status.READ);
+        chat.setCreatedAt(new Date());
+        chat.setUpdatedAt(new Date());
+        return chat;
+    }
+
+    private static List<ChatDTO> chats(int n) {
+        List<ChatDTO> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            list.add(chat(i));
+        }
+        return list;
+    }
+
+    private static List<ChatSummary> summaries(int n) {
+        List<ChatSummary> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            list.add(new ChatSummary(100 + i, "Friend " + i, "Last message " + i, new Date(), i % 4,
+                    "https://example.org/Chatify/profile-images/" + (100 + i) + "/profile1.png"));
+        }
+        return list;
+    }
+
+    private static List<UserDTO> users(int n) {
+        List<UserDTO> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            UserDTO user = new UserDTO();
+            user.setId(100 + i);
+            user.setFirstName("First" + i);
+            user.setLastName("Last" + i);
+            user.setDisplayName("First" + i + " Last" + i);
+            user.setCountryCode("94");
+            user.setContactNo("7712345" + i);
+            user.setProfileImage("");
+            user.setStatus(Status.ONLINE);
+            user.setCreatedAt(new Date());
+            user.setUpdatedAt(new Date());
+            list.add(user);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,33 @@
+package controller;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+import socket.AttachmentService;
+import socket.ChatService;
+import socket.FriendGraph;
+import socket.PresenceService;
+import socket.ProfileService;
+import socket.SyncService;
+
+@WebListener
+public class AppContextListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ProfileService.warm(sce.getServletContext());
+        AttachmentService.init(sce.getServletContext());
+        FriendGraph.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        // write pending chats and presence changes before the pool goes away
+        ChatService.shutdown();
+        PresenceService.shutdown();
+        SyncService.shutdown();
+        ProfileService.shutdown();
+        AttachmentService.shutdown();
+        FriendGraph.shutdown();
+    }
+}
@@ -0,0 +1,78 @@
+package controller;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import socket.AttachmentService;
+
+/**
+ * Attachment uploads, see AttachmentService.
+ *
+ * POST ?userId=&hash=&size=&name= announces a file, PUT ?userId=&id=&offset=
+ * with the raw chunk as body uploads part of the user's own file, GET
+ * ?userId=&id= redirects to the file if the user may read it.
+ */
+@WebServlet(name = "AttachmentController", urlPatterns = {"/AttachmentController"})
+public class AttachmentController extends HttpServlet {
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Map<String, Object> result;
+        try {
+            int userId = Integer.parseInt(request.getParameter("userId"));
+            long size = Long.parseLong(request.getParameter("size"));
+            result = AttachmentService.begin(userId, request.getParameter("hash"), size, request.getParameter("name"));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        write(response, result);
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        Map<String, Object> result;
+        try {
+            int userId = Integer.parseInt(request.getParameter("userId"));
+            long id = Long.parseLong(request.getParameter("id"));
+            long offset = Long.parseLong(request.getParameter("offset"));
+            // the body goes to disk as it arrives, never into a byte[]
+            result = AttachmentService.append(userId, id, offset, request.getContentLengthLong(), request.getInputStream());
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        write(response, result);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String url;
+        try {
+            int userId = Integer.parseInt(request.getParameter("userId"));
+            long id = Long.parseLong(request.getParameter("id"));
+            url = AttachmentService.canRead(userId, id) ? AttachmentService.getUrl(id, userId) : "";
+        } catch (NumberFormatException e) {
+            url = "";
+        }
+        if (url.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND); // also for files the user may not read
+            return;
+        }
+        // an id always points at the same content, but only for this user
+        response.setHeader("Cache-Control", "private, max-age=31536000, immutable");
+        response.setStatus(HttpServletResponse.SC_MOVED_PERMANENTLY);
+        response.setHeader("Location", url);
+    }
+
+    private static void write(HttpServletResponse response, Map<String, Object> result) throws IOException {
+        Gson gson = new Gson();
+        response.setContentType("application/json");
+        response.getWriter().write(gson.toJson(result));
+    }
+}
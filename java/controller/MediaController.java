@@ -0,0 +1,190 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import socket.AttachmentService;
+import socket.ProfileService;
+
+/**
+ * Serves stored media: /media/profile-images/{userId}/{file} and
+ * /media/attachments/{file}?id=&userId=, the latter only to users that may
+ * read that attachment (AttachmentService.canRead). Content-hashed
+ * names never change their bytes, so the name is a strong ETag and they are
+ * cached for a year as immutable; a repeat load is either no request at all
+ * or a 304. Single byte ranges are supported. The body is handed to the
+ * container's sendfile when it offers one, otherwise copied with
+ * FileChannel.transferTo.
+ */
+@WebServlet(name = "MediaController", urlPatterns = {"/media/*"})
+public class MediaController extends HttpServlet {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String PRIVATE_IMMUTABLE = "private, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, no-cache";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String path = request.getPathInfo();
+        File file = resolve(path);
+        boolean attachment = path != null && path.startsWith("/attachments/");
+        if (file == null || !file.isFile() || (attachment && !mayRead(request, file))) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String name = file.getName();
+        long length = file.length();
+        boolean hashed = AttachmentService.isContentHashed(name) || ProfileService.isContentHashed(name);
+        // hashed names are the content; anything else (legacy profile1.png) falls back to size and time
+        String etag = "\"" + (hashed ? name.substring(0, name.lastIndexOf('.'))
+                : Long.toHexString(file.lastModified()) + "-" + Long.toHexString(length)) + "\"";
+
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", hashed ? (attachment ? PRIVATE_IMMUTABLE : IMMUTABLE) : REVALIDATE);
+        response.setHeader("Accept-Ranges", "bytes");
+        if (matches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] r = parseRange(range, length);
+            if (r == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        String type = getServletContext().getMimeType(name);
+        response.setContentType(type == null ? "application/octet-stream" : type);
+        response.setContentLengthLong(end - start + 1);
+        if (end < start || "HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            // Tomcat NIO/APR: the connector writes the file straight from the page cache
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.getCanonicalPath());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+            return;
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel channel = Channels.newChannel(out);
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long n = in.transferTo(position, remaining, channel);
+                if (n <= 0) {
+                    break; // file shrank underneath us
+                }
+                position += n;
+                remaining -= n;
+            }
+            out.flush();
+        } catch (IOException e) {
+            // mostly clients going away mid-transfer
+        }
+    }
+
+    // /profile-images/{userId}/{file} or /attachments/{file}, nothing that could leave the folder
+    private static File resolve(String path) {
+        if (path == null) {
+            return null;
+        }
+        String[] parts = path.split("/");
+        if (parts.length < 3 || !parts[0].isEmpty() || !parts[parts.length - 1].matches("[A-Za-z0-9_-]+\\.[A-Za-z0-9]+")) {
+            return null;
+        }
+        if (parts.length == 3 && "attachments".equals(parts[1])) {
+            return AttachmentService.file(parts[2]);
+        }
+        if (parts.length == 4 && "profile-images".equals(parts[1])) {
+            try {
+                return ProfileService.file(Integer.parseInt(parts[2]), parts[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // ?id= has to name this file and ?userId= has to be allowed to read it; anything else is a 404
+    private static boolean mayRead(HttpServletRequest request, File file) {
+        try {
+            long id = Long.parseLong(request.getParameter("id"));
+            int userId = Integer.parseInt(request.getParameter("userId"));
+            return file.getName().equals(AttachmentService.completeFile(id)) && AttachmentService.canRead(userId, id);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // {start, end} for one satisfiable range, {} to send the whole file, null for 416
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0]; // other units or multipart ranges: a plain 200 is allowed
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(length - 1, Long.parseLong(spec.substring(dash + 1)));
+            }
+            if (start >= length || end < start) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
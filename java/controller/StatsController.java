@@ -0,0 +1,46 @@
+package controller;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import socket.RecentChatCache;
+import util.HibernateUtil;
+
+@WebServlet(name = "StatsController", urlPatterns = {"/StatsController"})
+public class StatsController extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!isLocal(request)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("recentChats", RecentChatCache.getStats());
+        stats.put("secondLevelCache", HibernateUtil.getCacheStats());
+
+        Gson gson = new Gson();
+        response.setContentType("application/json");
+        response.getWriter().write(gson.toJson(stats));
+    }
+
+    // Operators only: a loopback peer that isn't a tunnel or proxy forwarding someone else
+    private static boolean isLocal(HttpServletRequest request) {
+        if (request.getHeader("X-Forwarded-For") != null) {
+            return false;
+        }
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
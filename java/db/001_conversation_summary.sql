@@ -0,0 +1,30 @@
+-- Materialized home chat list: one row per (user, friend) conversation.
+CREATE TABLE IF NOT EXISTS conversation_summary (
+    id INT NOT NULL AUTO_INCREMENT,
+    user_id INT NOT NULL,
+    friend_id INT NOT NULL,
+    last_message LONGTEXT,
+    last_time_stamp DATETIME,
+    unread_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_summary_user_friend (user_id, friend_id),
+    KEY idx_summary_user_time (user_id, last_time_stamp),
+    CONSTRAINT fk_summary_user FOREIGN KEY (user_id) REFERENCES user (id),
+    CONSTRAINT fk_summary_friend FOREIGN KEY (friend_id) REFERENCES user (id)
+);
+
+-- Backfill from the existing chat history.
+INSERT INTO conversation_summary (user_id, friend_id, last_message, last_time_stamp, unread_count)
+SELECT x.user_id, x.friend_id, c.message, c.created_at,
+       (SELECT COUNT(*) FROM chat u
+         WHERE u.from_user = x.friend_id AND u.to_user = x.user_id
+           AND u.status IN ('SENT', 'DELIVERED'))
+FROM (SELECT d.user_id, d.friend_id, MAX(d.id) AS last_id
+        FROM (SELECT from_user AS user_id, to_user AS friend_id, id FROM chat
+              UNION ALL
+              SELECT to_user AS user_id, from_user AS friend_id, id FROM chat) d
+       GROUP BY d.user_id, d.friend_id) x
+JOIN chat c ON c.id = x.last_id
+ON DUPLICATE KEY UPDATE last_message = VALUES(last_message),
+                        last_time_stamp = VALUES(last_time_stamp),
+                        unread_count = VALUES(unread_count);
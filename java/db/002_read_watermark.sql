@@ -0,0 +1,8 @@
+-- Per-(reader, conversation) read watermark: highest message id from the friend the user has read.
+ALTER TABLE conversation_summary ADD COLUMN last_read_id INT NOT NULL DEFAULT 0;
+
+-- Backfill from messages already marked READ.
+UPDATE conversation_summary cs
+SET cs.last_read_id = COALESCE((SELECT MAX(c.id) FROM chat c
+                                 WHERE c.from_user = cs.friend_id AND c.to_user = cs.user_id
+                                   AND c.status = 'READ'), 0);
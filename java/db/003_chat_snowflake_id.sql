@@ -0,0 +1,5 @@
+-- Chat ids are generated by the application (util.SnowflakeIdGenerator), no more AUTO_INCREMENT.
+-- Existing ids are far below the first generated one, so id order stays creation order.
+ALTER TABLE chat MODIFY id BIGINT NOT NULL;
+
+ALTER TABLE conversation_summary MODIFY last_read_id BIGINT NOT NULL DEFAULT 0;
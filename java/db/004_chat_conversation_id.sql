@@ -0,0 +1,16 @@
+-- Canonical conversation key on chat: (smaller user id << 32) | larger user id, see Chat.conversationOf.
+-- Replaces the (from = a AND to = b) OR (from = b AND to = a) lookups, which no single index serves.
+ALTER TABLE chat ADD COLUMN conversation_id BIGINT NULL AFTER id;
+
+UPDATE chat
+SET conversation_id = (CAST(LEAST(from_user, to_user) AS UNSIGNED) << 32) | GREATEST(from_user, to_user)
+WHERE conversation_id IS NULL;
+
+ALTER TABLE chat MODIFY conversation_id BIGINT NOT NULL;
+
+-- History pages, last message and unread counts per conversation. Chat ids are time-ordered
+-- (003), so id carries the created_at order and the index needs no created_at column.
+CREATE INDEX idx_chat_conversation ON chat (conversation_id, id);
+
+-- Pending deliveries on connect and unread lookups by recipient.
+CREATE INDEX idx_chat_to_status ON chat (to_user, status);
@@ -0,0 +1,11 @@
+-- Per-user change log behind the "sync" frame. Ids come from util.SnowflakeIdGenerator and
+-- are the sync version; SyncService compacts the table periodically.
+CREATE TABLE IF NOT EXISTS change_log (
+    id BIGINT NOT NULL,
+    user_id INT NOT NULL,
+    kind VARCHAR(16) NOT NULL,
+    friend_id INT NOT NULL,
+    ref_id BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id),
+    KEY idx_change_user_id (user_id, id)
+);
@@ -0,0 +1,19 @@
+-- Chat attachments, one row per uploader and content (SHA-256 and size); the file on disk is
+-- shared by content once the server has hashed it. received < size while an upload is in
+-- progress and is where a reconnecting client resumes; chat.files holds the attachment id.
+CREATE TABLE IF NOT EXISTS attachment (
+    id BIGINT NOT NULL,
+    hash CHAR(64) NOT NULL,
+    owner_id INT NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    ext VARCHAR(10) NOT NULL,
+    size BIGINT NOT NULL,
+    received BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME NULL,
+    updated_at DATETIME NULL,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_attachment_owner_hash_size (owner_id, hash, size)
+);
+
+-- Messages without an attachment used to carry the "FILE:" placeholder.
+UPDATE chat SET files = '' WHERE files = 'FILE:';
@@ -0,0 +1,67 @@
+-- Old OR lookups against conversation_id lookups on a generated dataset (MySQL 8).
+-- Run on a scratch schema only: it creates and fills chat_bench with ~5M rows.
+--   mysql -u root chatify_bench < db/bench/conversation_queries.sql
+-- Compare the "actual time" lines of each EXPLAIN ANALYZE pair.
+
+SET SESSION cte_max_recursion_depth = 10000000;
+
+DROP TABLE IF EXISTS chat_bench;
+CREATE TABLE chat_bench (
+    id BIGINT NOT NULL,
+    conversation_id BIGINT NOT NULL,
+    from_user INT NOT NULL,
+    to_user INT NOT NULL,
+    message LONGTEXT NOT NULL,
+    files LONGTEXT NOT NULL,
+    status VARCHAR(30),
+    created_at DATETIME,
+    updated_at DATETIME,
+    PRIMARY KEY (id),
+    KEY idx_from_to (from_user, to_user) -- what an index-tuned old schema would have
+);
+
+-- 5M messages between 20k users, each user talking to ~50 others
+INSERT INTO chat_bench (id, conversation_id, from_user, to_user, message, files, status, created_at, updated_at)
+WITH RECURSIVE n (i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 5000000)
+SELECT i, 0, a, b, CONCAT('message ', i), 'FILE:',
+       ELT(1 + (i % 3), 'SENT', 'DELIVERED', 'READ'),
+       NOW() - INTERVAL (5000000 - i) SECOND, NOW() - INTERVAL (5000000 - i) SECOND
+FROM (SELECT i, 1 + (i * 7919) % 20000 AS a, 1 + ((i * 7919) % 20000 + 1 + (i % 50)) % 20000 AS b FROM n) x;
+
+UPDATE chat_bench
+SET conversation_id = (CAST(LEAST(from_user, to_user) AS UNSIGNED) << 32) | GREATEST(from_user, to_user);
+ANALYZE TABLE chat_bench;
+
+SET @a = 4242, @b = (SELECT to_user FROM chat_bench WHERE from_user = 4242 LIMIT 1);
+SET @conv = (CAST(LEAST(@a, @b) AS UNSIGNED) << 32) | GREATEST(@a, @b);
+
+-- Before: newest history page
+EXPLAIN ANALYZE
+SELECT * FROM chat_bench
+WHERE (from_user = @a AND to_user = @b) OR (from_user = @b AND to_user = @a)
+ORDER BY created_at DESC, id DESC LIMIT 51;
+
+-- Before: unread count for @a
+EXPLAIN ANALYZE
+SELECT COUNT(*) FROM chat_bench WHERE from_user = @b AND to_user = @a AND status IN ('SENT', 'DELIVERED');
+
+-- Before: pending deliveries on connect
+EXPLAIN ANALYZE
+SELECT from_user, MAX(id), COUNT(id) FROM chat_bench WHERE to_user = @a AND status = 'SENT' GROUP BY from_user;
+
+CREATE INDEX idx_chat_conversation ON chat_bench (conversation_id, id);
+CREATE INDEX idx_chat_to_status ON chat_bench (to_user, status);
+
+-- After: newest history page
+EXPLAIN ANALYZE
+SELECT * FROM chat_bench WHERE conversation_id = @conv ORDER BY id DESC LIMIT 51;
+
+-- After: unread count for @a
+EXPLAIN ANALYZE
+SELECT COUNT(*) FROM chat_bench WHERE conversation_id = @conv AND to_user = @a AND status IN ('SENT', 'DELIVERED');
+
+-- After: pending deliveries on connect
+EXPLAIN ANALYZE
+SELECT from_user, MAX(id), COUNT(id) FROM chat_bench WHERE to_user = @a AND status = 'SENT' GROUP BY from_user;
+
+DROP TABLE chat_bench;
@@ -0,0 +1,172 @@
+package dto;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import entity.Chat;
+import entity.Status;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Wire form of a Chat: the two users are sent as ids only instead of the
+ * full User rows.
+ */
+public class ChatDTO implements Serializable {
+
+    private long id;
+    private int fromId;
+    private int toId;
+    private String message;
+    private String files;
+    private Status status;
+    private Date createdAt;
+    private Date updatedAt;
+
+    public ChatDTO() {
+    }
+
+    public static ChatDTO from(Chat chat) {
+        ChatDTO dto = new ChatDTO();
+        dto.setId(chat.getId());
+        dto.setFromId(chat.getFrom().getId());
+        dto.setToId(chat.getTo().getId());
+        dto.setMessage(chat.getMessage());
+        dto.setFiles(chat.getFiles());
+        dto.setStatus(chat.getStatus());
+        dto.setCreatedAt(chat.getCreatedAt());
+        dto.setUpdatedAt(chat.getUpdatedAt());
+        return dto;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public int getFromId() {
+        return fromId;
+    }
+
+    public void setFromId(int fromId) {
+        this.fromId = fromId;
+    }
+
+    public int getToId() {
+        return toId;
+    }
+
+    public void setToId(int toId) {
+        this.toId = toId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getFiles() {
+        return files;
+    }
+
+    public void setFiles(String files) {
+        this.files = files;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public static class Adapter extends TypeAdapter<ChatDTO> {
+
+        @Override
+        public void write(JsonWriter out, ChatDTO chat) throws IOException {
+            if (chat == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(chat.id);
+            Wire.idRef(out, "from", chat.fromId);
+            Wire.idRef(out, "to", chat.toId);
+            Wire.string(out, "message", chat.message);
+            Wire.string(out, "files", chat.files);
+            if (chat.status != null) {
+                out.name("status").value(chat.status.name());
+            }
+            Wire.date(out, "createdAt", chat.createdAt);
+            Wire.date(out, "updatedAt", chat.updatedAt);
+            out.endObject();
+        }
+
+        @Override
+        public ChatDTO read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ChatDTO chat = new ChatDTO();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        chat.id = in.nextLong();
+                        break;
+                    case "from":
+                        chat.fromId = Wire.nextIdRef(in);
+                        break;
+                    case "to":
+                        chat.toId = Wire.nextIdRef(in);
+                        break;
+                    case "message":
+                        chat.message = Wire.nextString(in);
+                        break;
+                    case "files":
+                        chat.files = Wire.nextString(in);
+                        break;
+                    case "status":
+                        chat.status = Wire.nextEnum(in, Status.class);
+                        break;
+                    case "createdAt":
+                        chat.createdAt = Wire.nextDate(in);
+                        break;
+                    case "updatedAt":
+                        chat.updatedAt = Wire.nextDate(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return chat;
+        }
+    }
+}
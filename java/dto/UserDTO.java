@@ -1,109 +1,185 @@
-/*
- * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
- * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
- */
-package dto;
-
-import entity.Status;
-import java.io.Serializable;
-import java.util.Date;
-
-/**
- *
- * @author Dilhara
- */
-public class UserDTO implements Serializable {
-
-    private int id;
-    private String firstName;
-    private String lastName;
-    private String displayName;
-    private String countryCode;
-    private String contactNo;
-    private String profileImage;
-    private Date createdAt;
-    private Date updatedAt;
-    private Status status;
-
-    public int getId() {
-        return id;
-    }
-
-    public void setId(int id) {
-        this.id = id;
-    }
-
-    public String getFirstName() {
-        return firstName;
-    }
-
-    public void setFirstName(String firstName) {
-        this.firstName = firstName;
-    }
-
-    public String getLastName() {
-        return lastName;
-    }
-
-    public void setLastName(String lastName) {
-        this.lastName = lastName;
-    }
-
-    public String getCountryCode() {
-        return countryCode;
-    }
-
-    public void setCountryCode(String countryCode) {
-        this.countryCode = countryCode;
-    }
-
-    public String getContactNo() {
-        return contactNo;
-    }
-
-    public void setContactNo(String contactNo) {
-        this.contactNo = contactNo;
-    }
-
-    public String getProfileImage() {
-        return profileImage;
-    }
-
-    public void setProfileImage(String profileImage) {
-        this.profileImage = profileImage;
-    }
-
-    public Date getCreatedAt() {
-        return createdAt;
-    }
-
-    public void setCreatedAt(Date createdAt) {
-        this.createdAt = createdAt;
-    }
-
-    public Date getUpdatedAt() {
-        return updatedAt;
-    }
-
-    public void setUpdatedAt(Date updatedAt) {
-        this.updatedAt = updatedAt;
-    }
-
-    public Status getStatus() {
-        return status;
-    }
-
-    public void setStatus(Status status) {
-        this.status = status;
-    }
-
-    public String getDisplayName() {
-        return displayName;
-    }
-
-    public void setDisplayName(String displayName) {
-        this.displayName = displayName;
-    }
-    
-    
-}
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package dto;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import entity.Status;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ *
+ * @author Dilhara
+ */
+public class UserDTO implements Serializable {
+
+    private int id;
+    private String firstName;
+    private String lastName;
+    private String displayName;
+    private String countryCode;
+    private String contactNo;
+    private String profileImage;
+    private Date createdAt;
+    private Date updatedAt;
+    private Status status;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public void setCountryCode(String countryCode) {
+        this.countryCode = countryCode;
+    }
+
+    public String getContactNo() {
+        return contactNo;
+    }
+
+    public void setContactNo(String contactNo) {
+        this.contactNo = contactNo;
+    }
+
+    public String getProfileImage() {
+        return profileImage;
+    }
+
+    public void setProfileImage(String profileImage) {
+        this.profileImage = profileImage;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public static class Adapter extends TypeAdapter<UserDTO> {
+
+        @Override
+        public void write(JsonWriter out, UserDTO user) throws IOException {
+            if (user == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(user.id);
+            Wire.string(out, "firstName", user.firstName);
+            Wire.string(out, "lastName", user.lastName);
+            Wire.string(out, "displayName", user.displayName);
+            Wire.string(out, "countryCode", user.countryCode);
+            Wire.string(out, "contactNo", user.contactNo);
+            Wire.string(out, "profileImage", user.profileImage);
+            Wire.date(out, "createdAt", user.createdAt);
+            Wire.date(out, "updatedAt", user.updatedAt);
+            if (user.status != null) {
+                out.name("status").value(user.status.name());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public UserDTO read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            UserDTO user = new UserDTO();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        user.id = in.nextInt();
+                        break;
+                    case "firstName":
+                        user.firstName = Wire.nextString(in);
+                        break;
+                    case "lastName":
+                        user.lastName = Wire.nextString(in);
+                        break;
+                    case "displayName":
+                        user.displayName = Wire.nextString(in);
+                        break;
+                    case "countryCode":
+                        user.countryCode = Wire.nextString(in);
+                        break;
+                    case "contactNo":
+                        user.contactNo = Wire.nextString(in);
+                        break;
+                    case "profileImage":
+                        user.profileImage = Wire.nextString(in);
+                        break;
+                    case "createdAt":
+                        user.createdAt = Wire.nextDate(in);
+                        break;
+                    case "updatedAt":
+                        user.updatedAt = Wire.nextDate(in);
+                        break;
+                    case "status":
+                        user.status = Wire.nextEnum(in, Status.class);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return user;
+        }
+    }
+}
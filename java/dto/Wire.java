@@ -0,0 +1,91 @@
+package dto;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * Shared helpers for the hand-written TypeAdapters of the wire DTOs. Dates use
+ * the same pattern as the Gson instance in ChatService. The next* readers
+ * accept what the writers produce and take JSON null as absent.
+ */
+public final class Wire {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private Wire() {
+    }
+
+    public static void date(JsonWriter out, String name, Date value) throws IOException {
+        if (value != null) {
+            out.name(name).value(DATE.format(value.toInstant()));
+        }
+    }
+
+    public static void string(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    public static void idRef(JsonWriter out, String name, int id) throws IOException {
+        // clients only read from.id / to.id, so send a one-field object
+        out.name(name).beginObject().name("id").value(id).endObject();
+    }
+
+    public static Date nextDate(JsonReader in) throws IOException {
+        String value = nextString(in);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Date.from(LocalDateTime.parse(value, DATE).atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new JsonSyntaxException("Bad date '" + value + "' at " + in.getPath(), e);
+        }
+    }
+
+    public static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    public static <E extends Enum<E>> E nextEnum(JsonReader in, Class<E> type) throws IOException {
+        String value = nextString(in);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value);
+        } catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException("Bad " + type.getSimpleName() + " '" + value + "' at " + in.getPath(), e);
+        }
+    }
+
+    // Reads the {id} object idRef writes; other fields are skipped
+    public static int nextIdRef(JsonReader in) throws IOException {
+        int id = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("id".equals(in.nextName())) {
+                id = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return id;
+    }
+}
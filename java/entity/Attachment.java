@@ -0,0 +1,109 @@
+package entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import org.hibernate.annotations.GenericGenerator;
+
+/**
+ * A file sent with a chat, one row per uploader and content (hash and size);
+ * the bytes on disk are shared by content. It is complete once received
+ * reaches size; until then received is where an interrupted upload resumes.
+ * Chat.files holds only the id, see AttachmentService.
+ */
+@Entity
+@Table(name = "attachment", uniqueConstraints = @UniqueConstraint(name = "uk_attachment_owner_hash_size", columnNames = {"owner_id", "hash", "size"}))
+public class Attachment extends BaseEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(generator = "snowflake")
+    @GenericGenerator(name = "snowflake", strategy = "util.SnowflakeIdGenerator")
+    private long id;
+
+    // SHA-256 of the content, hex
+    @Column(name = "hash", length = 64, nullable = false)
+    private String hash;
+
+    @Column(name = "owner_id", nullable = false)
+    private int ownerId; // the uploader, the only one who may write to it
+
+    @Column(name = "name", length = 255, nullable = false)
+    private String name;
+
+    @Column(name = "ext", length = 10, nullable = false)
+    private String ext;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "received", nullable = false)
+    private long received;
+
+    public Attachment() {
+    }
+
+    public boolean isComplete() {
+        return received == size;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public int getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(int ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getExt() {
+        return ext;
+    }
+
+    public void setExt(String ext) {
+        this.ext = ext;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+}
@@ -0,0 +1,101 @@
+package entity;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import org.hibernate.annotations.GenericGenerator;
+
+/**
+ * One change a user's clients have to catch up on: a new or deleted chat,
+ * a read/delivered watermark moving, or a contact being added. The id is
+ * time-ordered and doubles as the sync version. Written in the same
+ * transaction as the change itself, see SyncService.
+ */
+@Entity
+@Table(name = "change_log", indexes = @Index(name = "idx_change_user_id", columnList = "user_id,id"))
+public class ChangeLog implements Serializable {
+
+    public enum Kind {
+        NEW, // ref is the chat id
+        DELETE, // ref is the chat id
+        DELIVERED, // ref is the newest chat friend received
+        READ, // ref is the newest chat friend read
+        CONTACT // friend was added or renamed, no ref
+    }
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(generator = "snowflake")
+    @GenericGenerator(name = "snowflake", strategy = "util.SnowflakeIdGenerator")
+    private long id;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", length = 16, nullable = false)
+    private Kind kind;
+
+    @Column(name = "friend_id", nullable = false)
+    private int friendId;
+
+    @Column(name = "ref_id", nullable = false)
+    private long refId;
+
+    public ChangeLog() {
+    }
+
+    public ChangeLog(int userId, Kind kind, int friendId, long refId) {
+        this.userId = userId;
+        this.kind = kind;
+        this.friendId = friendId;
+        this.refId = refId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public int getFriendId() {
+        return friendId;
+    }
+
+    public void setFriendId(int friendId) {
+        this.friendId = friendId;
+    }
+
+    public long getRefId() {
+        return refId;
+    }
+
+    public void setRefId(long refId) {
+        this.refId = refId;
+    }
+
+}
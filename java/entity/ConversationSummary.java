@@ -0,0 +1,121 @@
+package entity;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * One row per (user, friend) conversation. Kept up to date by
+ * ConversationSummaryService in the same transaction as the chat writes so
+ * the home chat list can be read with a single query.
+ */
+@Entity
+@Table(name = "conversation_summary",
+        uniqueConstraints = @UniqueConstraint(name = "uk_summary_user_friend", columnNames = {"user_id", "friend_id"}),
+        indexes = @Index(name = "idx_summary_user_time", columnList = "user_id,last_time_stamp"))
+public class ConversationSummary implements Serializable {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne
+    @JoinColumn(name = "friend_id", nullable = false)
+    private User friend;
+
+    @Column(name = "last_message", columnDefinition = "LONGTEXT")
+    private String lastMessage;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_time_stamp")
+    private Date lastTimeStamp;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    // highest message id from friend that user has read
+    @Column(name = "last_read_id", nullable = false)
+    private long lastReadId;
+
+    public ConversationSummary() {
+    }
+
+    public ConversationSummary(User user, User friend) {
+        this.user = user;
+        this.friend = friend;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public User getFriend() {
+        return friend;
+    }
+
+    public void setFriend(User friend) {
+        this.friend = friend;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public Date getLastTimeStamp() {
+        return lastTimeStamp;
+    }
+
+    public void setLastTimeStamp(Date lastTimeStamp) {
+        this.lastTimeStamp = lastTimeStamp;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public long getLastReadId() {
+        return lastReadId;
+    }
+
+    public void setLastReadId(long lastReadId) {
+        this.lastReadId = lastReadId;
+    }
+
+}
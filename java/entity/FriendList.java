@@ -1,101 +1,104 @@
-/*
- * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
- * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
- */
-package entity;
-
-import java.io.Serializable;
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.EnumType;
-import javax.persistence.Enumerated;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
-import javax.persistence.JoinColumn;
-import javax.persistence.ManyToOne;
-import javax.persistence.Table;
-
-/**
- *
- * @author Dilhara
- */
-@Entity
-@Table(name = "friend_list")
-public class FriendList implements Serializable {
-
-    @Id
-    @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private int id;
-
-    @ManyToOne
-    @JoinColumn(name = "user_id")
-    private User userId;
-
-    @ManyToOne
-    @JoinColumn(name = "friend_id")
-    private User friendId;
-
-    @Enumerated(EnumType.STRING)
-    @Column(length = 30, name = "user_status")
-    private Status status = Status.ACTIVE;
-
-    @Column(name = "display_name", length = 100, nullable = true)
-    private String displayName;
-
-    public FriendList() {
-    }
-
-    public FriendList(User userId, User friendId) {
-        this.userId = userId;
-        this.friendId = friendId;
-    }
-
-    public FriendList(User userId, User friendId, String displayName) {
-        this.userId = userId;
-        this.friendId = friendId;
-        this.displayName = displayName;
-    }
-
-    public int getId() {
-        return id;
-    }
-
-    public void setId(int id) {
-        this.id = id;
-    }
-
-    public User getUserId() {
-        return userId;
-    }
-
-    public void setUserId(User userId) {
-        this.userId = userId;
-    }
-
-    public User getFriendId() {
-        return friendId;
-    }
-
-    public void setFriendId(User friendId) {
-        this.friendId = friendId;
-    }
-
-    public Status getStatus() {
-        return status;
-    }
-
-    public void setStatus(Status status) {
-        this.status = status;
-    }
-
-    public String getDisplayName() {
-        return displayName;
-    }
-
-    public void setDisplayName(String displayName) {
-        this.displayName = displayName;
-    }
-
-}
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package entity;
+
+import java.io.Serializable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+/**
+ *
+ * @author Dilhara
+ */
+@Entity
+@Table(name = "friend_list")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "friendList") // HibernateUtil.FRIEND_LIST_REGION
+public class FriendList implements Serializable {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    private User userId;
+
+    @ManyToOne
+    @JoinColumn(name = "friend_id")
+    private User friendId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 30, name = "user_status")
+    private Status status = Status.ACTIVE;
+
+    @Column(name = "display_name", length = 100, nullable = true)
+    private String displayName;
+
+    public FriendList() {
+    }
+
+    public FriendList(User userId, User friendId) {
+        this.userId = userId;
+        this.friendId = friendId;
+    }
+
+    public FriendList(User userId, User friendId, String displayName) {
+        this.userId = userId;
+        this.friendId = friendId;
+        this.displayName = displayName;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public User getUserId() {
+        return userId;
+    }
+
+    public void setUserId(User userId) {
+        this.userId = userId;
+    }
+
+    public User getFriendId() {
+        return friendId;
+    }
+
+    public void setFriendId(User friendId) {
+        this.friendId = friendId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+}
@@ -1,12 +1,12 @@
-package entity;
-
-public enum Status {
-    ACTIVE, 
-    BLOCKED,
-    DELIVERED, 
-    READ, 
-    SENT, 
-    DELETED, 
-    ONLINE, 
-    OFFLINE
-}
+package entity;
+
+public enum Status {
+    ACTIVE, 
+    BLOCKED,
+    DELIVERED, 
+    READ, 
+    SENT, 
+    DELETED, 
+    ONLINE, 
+    OFFLINE
+}
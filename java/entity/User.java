@@ -1,106 +1,109 @@
-package entity;
-
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.EnumType;
-import javax.persistence.Enumerated;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
-import javax.persistence.Table;
-
-@Entity
-@Table(name = "user")
-public class User extends BaseEntity {
-
-    @Id
-    @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private int id;
-
-    @Column(name = "first_name", length = 45, nullable = false)
-    private String firstName;
-
-    @Column(name = "last_name", length = 45, nullable = false)
-    private String lastName;
-
-    @Column(name = "country_code", length = 5, nullable = false)
-    private String countryCode;
-
-    @Column(name = "contact_no", length = 45, nullable = false, unique = true)
-    private String contactNo;
-
-    @Enumerated(EnumType.STRING)
-    @Column(length = 45, name = "status")
-    private Status status = Status.ONLINE;
-
-    // New OTP field
-    @Column(name = "otp", length = 10)
-    private String otp;
-
-    public User() {
-    }
-
-    public User(String firstName, String lastName, String countryCode, String contactNo) {
-        this.firstName = firstName;
-        this.lastName = lastName;
-        this.countryCode = countryCode;
-        this.contactNo = contactNo;
-    }
-
-    public int getId() {
-        return id;
-    }
-
-    public void setId(int id) {
-        this.id = id;
-    }
-
-    public String getFirstName() {
-        return firstName;
-    }
-
-    public void setFirstName(String firstName) {
-        this.firstName = firstName;
-    }
-
-    public String getLastName() {
-        return lastName;
-    }
-
-    public void setLastName(String lastName) {
-        this.lastName = lastName;
-    }
-
-    public String getCountryCode() {
-        return countryCode;
-    }
-
-    public void setCountryCode(String countryCode) {
-        this.countryCode = countryCode;
-    }
-
-    public String getContactNo() {
-        return contactNo;
-    }
-
-    public void setContactNo(String contactNo) {
-        this.contactNo = contactNo;
-    }
-
-    public Status getStatus() {
-        return status;
-    }
-
-    public void setStatus(Status status) {
-        this.status = status;
-    }
-
-    public String getOtp() {
-        return otp;
-    }
-
-    public void setOtp(String otp) {
-        this.otp = otp;
-    }
-}
+package entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+@Entity
+@Table(name = "user")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user") // HibernateUtil.USER_REGION
+public class User extends BaseEntity {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Column(name = "first_name", length = 45, nullable = false)
+    private String firstName;
+
+    @Column(name = "last_name", length = 45, nullable = false)
+    private String lastName;
+
+    @Column(name = "country_code", length = 5, nullable = false)
+    private String countryCode;
+
+    @Column(name = "contact_no", length = 45, nullable = false, unique = true)
+    private String contactNo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 45, name = "status")
+    private Status status = Status.ONLINE;
+
+    // New OTP field
+    @Column(name = "otp", length = 10)
+    private String otp;
+
+    public User() {
+    }
+
+    public User(String firstName, String lastName, String countryCode, String contactNo) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.countryCode = countryCode;
+        this.contactNo = contactNo;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public void setCountryCode(String countryCode) {
+        this.countryCode = countryCode;
+    }
+
+    public String getContactNo() {
+        return contactNo;
+    }
+
+    public void setContactNo(String contactNo) {
+        this.contactNo = contactNo;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getOtp() {
+        return otp;
+    }
+
+    public void setOtp(String otp) {
+        this.otp = otp;
+    }
+}
@@ -0,0 +1,383 @@
+package socket;
+
+import entity.Attachment;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.PersistenceException;
+import javax.servlet.ServletContext;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.exception.ConstraintViolationException;
+import util.HibernateUtil;
+import util.SnowflakeIdGenerator;
+
+/**
+ * Chunked, resumable attachment uploads (AttachmentController). A client
+ * announces the SHA-256, size and name of a file first. Every uploader gets
+ * their own row: an unfinished upload of theirs continues at its received
+ * offset, one they finished completes right away, anything else starts at 0.
+ * Chunks are written straight from the request stream into
+ * web/attachments/partial/{id}.part at the expected offset; the last one
+ * checks the hash and moves the file to web/attachments/{hash}.{ext}. Storage
+ * is shared only from there, once the server has hashed bytes that user sent.
+ * A chat carries only the attachment id; the owner and both sides of such a
+ * chat may read the file (canRead), through MediaController. Uploads left
+ * unfinished for chatify.attachment.staleMs are deleted, row and part file.
+ */
+public class AttachmentService {
+
+    // -Dchatify.attachment.chunkBytes=... largest chunk a client may send
+    public static final int CHUNK_BYTES = Integer.getInteger("chatify.attachment.chunkBytes", 1024 * 1024);
+    // -Dchatify.attachment.maxBytes=... largest file
+    private static final long MAX_BYTES = Long.getLong("chatify.attachment.maxBytes", 100L * 1024 * 1024);
+    // -Dchatify.attachment.staleMs=... unfinished uploads untouched this long are deleted, 0 keeps them
+    private static final long STALE_MS = Long.getLong("chatify.attachment.staleMs", TimeUnit.DAYS.toMillis(1));
+
+    // id -> stored file name, for attachments that are complete (those never change)
+    private static final ConcurrentHashMap<Long, String> COMPLETE = new ConcurrentHashMap<>();
+    // one writer per upload; striped so abandoned uploads leave nothing behind
+    private static final Object[] LOCKS = new Object[64];
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "chatify-attachment-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private static volatile File root;
+
+    // Call at startup
+    public static void init(ServletContext context) {
+        String appPath = context.getRealPath(""); //Full path of the Web Pages folder
+        root = new File(appPath.replace("build" + File.separator + "web", "web" + File.separator + "attachments"));
+        new File(root, "partial").mkdirs();
+        if (STALE_MS > 0) {
+            long every = Math.min(STALE_MS, TimeUnit.HOURS.toMillis(1));
+            SCHEDULER.scheduleWithFixedDelay(AttachmentService::sweep, every, every, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Call on shutdown
+    public static void shutdown() {
+        SCHEDULER.shutdownNow();
+    }
+
+    // Reply to an upload announcement: {status, attachmentId, received, complete, chunkSize} or {status, message}
+    public static Map<String, Object> begin(int userId, String hash, long size, String name) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", Boolean.FALSE);
+        if (hash == null || !hash.matches("[0-9a-f]{64}")) {
+            result.put("message", "Invalid hash");
+            return result;
+        }
+        if (size <= 0 || size > MAX_BYTES) {
+            result.put("message", "File size must be between 1 and " + MAX_BYTES + " bytes");
+            return result;
+        }
+
+        Attachment attachment = find(userId, hash, size);
+        if (attachment == null) {
+            Attachment created = new Attachment();
+            created.setHash(hash);
+            created.setOwnerId(userId);
+            created.setName(name == null ? "" : name.length() > 255 ? name.substring(0, 255) : name);
+            created.setExt(extension(name));
+            created.setSize(size);
+            Session s = HibernateUtil.getSessionFactory().openSession();
+            Transaction tr = s.beginTransaction();
+            try {
+                s.save(created);
+                tr.commit();
+                attachment = created;
+            } catch (PersistenceException e) {
+                if (tr.getStatus().canRollback()) {
+                    tr.rollback();
+                }
+                if (!(e instanceof ConstraintViolationException || e.getCause() instanceof ConstraintViolationException)) {
+                    throw e;
+                }
+                // another device of this user announced it meanwhile, the unique key kept that one
+            } finally {
+                s.close();
+            }
+            if (attachment == null) {
+                attachment = find(userId, hash, size);
+            }
+            if (attachment == null) {
+                result.put("message", "Upload could not be started");
+                return result;
+            }
+        }
+
+        result.put("status", Boolean.TRUE);
+        result.put("attachmentId", Long.toString(attachment.getId()));
+        result.put("received", attachment.getReceived());
+        result.put("complete", attachment.isComplete());
+        result.put("chunkSize", CHUNK_BYTES);
+        return result;
+    }
+
+    // Rows are per (owner, hash, size): claiming a hash gives nobody else's upload or file
+    private static Attachment find(int userId, String hash, long size) {
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        try {
+            return (Attachment) s.createCriteria(Attachment.class)
+                    .add(Restrictions.eq("ownerId", userId))
+                    .add(Restrictions.eq("hash", hash))
+                    .add(Restrictions.eq("size", size))
+                    .uniqueResult();
+        } finally {
+            s.close();
+        }
+    }
+
+    // Writes one chunk of the user's own upload at offset, which has to be what the server has received so far.
+    // Reply {status, received, complete}; on a wrong offset status is false and received tells where to resume.
+    public static Map<String, Object> append(int userId, long attachmentId, long offset, long length, InputStream in) throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", Boolean.FALSE);
+        if (length <= 0 || length > CHUNK_BYTES) {
+            result.put("message", "Chunks must be between 1 and " + CHUNK_BYTES + " bytes");
+            return result;
+        }
+
+        synchronized (lock(attachmentId)) {
+            Session s = HibernateUtil.getSessionFactory().openSession();
+            try {
+                Attachment attachment = (Attachment) s.get(Attachment.class, attachmentId);
+                if (attachment == null || attachment.getOwnerId() != userId) {
+                    result.put("message", "Unknown attachment");
+                    return result;
+                }
+                result.put("received", attachment.getReceived());
+                result.put("complete", attachment.isComplete());
+                if (attachment.isComplete() || offset != attachment.getReceived() || offset + length > attachment.getSize()) {
+                    result.put("message", "Resume at received");
+                    return result;
+                }
+
+                File part = partFile(attachmentId);
+                try (FileChannel out = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    out.truncate(offset); // drop whatever an interrupted chunk left behind
+                    ReadableByteChannel src = Channels.newChannel(in);
+                    long written = 0;
+                    while (written < length) {
+                        long n = out.transferFrom(src, offset + written, length - written);
+                        if (n <= 0) {
+                            break; // client went away, the next chunk resumes at received
+                        }
+                        written += n;
+                    }
+                    if (written < length) {
+                        result.put("message", "Incomplete chunk");
+                        return result;
+                    }
+                    out.force(false);
+                }
+
+                long received = offset + length;
+                if (received == attachment.getSize() && !finish(attachment, part)) {
+                    received = 0; // content didn't match the announced hash, start over
+                    result.put("message", "Content does not match the hash");
+                } else {
+                    result.put("status", Boolean.TRUE);
+                }
+                Transaction tr = s.beginTransaction();
+                attachment.setReceived(received);
+                s.update(attachment);
+                tr.commit();
+                result.put("received", received);
+                result.put("complete", attachment.isComplete());
+                return result;
+            } finally {
+                s.close();
+            }
+        }
+    }
+
+    // Deletes unfinished uploads nobody wrote to for STALE_MS, the row and the part file
+    private static void sweep() {
+        try {
+            Date before = new Date(System.currentTimeMillis() - STALE_MS);
+            List<Long> ids;
+            Session s = HibernateUtil.getSessionFactory().openSession();
+            try {
+                ids = s.createQuery("SELECT a.id FROM Attachment a WHERE a.received < a.size AND a.updatedAt < :before", Long.class)
+                        .setParameter("before", before)
+                        .list();
+            } finally {
+                s.close();
+            }
+            int removed = 0;
+            for (long id : ids) {
+                synchronized (lock(id)) {
+                    s = HibernateUtil.getSessionFactory().openSession();
+                    Transaction tr = s.beginTransaction();
+                    try {
+                        // checked again under the lock, a chunk may have arrived since the select
+                        int n = s.createQuery("DELETE FROM Attachment a WHERE a.id = :id AND a.received < a.size AND a.updatedAt < :before")
+                                .setParameter("id", id)
+                                .setParameter("before", before)
+                                .executeUpdate();
+                        tr.commit();
+                        if (n > 0) {
+                            Files.deleteIfExists(partFile(id).toPath());
+                            removed++;
+                        }
+                    } catch (RuntimeException e) {
+                        if (tr.getStatus().canRollback()) {
+                            tr.rollback();
+                        }
+                        throw e;
+                    } finally {
+                        s.close();
+                    }
+                }
+            }
+            if (removed > 0) {
+                System.out.println("Removed " + removed + " stale attachment uploads");
+            }
+        } catch (RuntimeException | IOException e) {
+            System.out.println("⚠️ Stale attachment uploads not removed");
+            e.printStackTrace();
+        }
+    }
+
+    private static Object lock(long attachmentId) {
+        // snowflake ids mostly end in a zero sequence, so mix before picking a stripe
+        return LOCKS[Long.hashCode(attachmentId * 0x9E3779B97F4A7C15L) & (LOCKS.length - 1)];
+    }
+
+    // Hash the whole part file, then move it where MediaController finds it; content already
+    // stored by an earlier upload is kept and the part dropped
+    private static boolean finish(Attachment attachment, File part) throws IOException {
+        String hash;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(part.toPath()), sha256())) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) >= 0) {
+                // digest as we go
+            }
+            hash = ProfileService.hex(((DigestInputStream) in).getMessageDigest().digest(), 32);
+        }
+        if (!hash.equals(attachment.getHash())) {
+            part.delete();
+            return false;
+        }
+        File target = new File(root, fileName(attachment));
+        if (target.isFile() && target.length() == attachment.getSize()) {
+            Files.delete(part.toPath());
+        } else {
+            Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return true;
+    }
+
+    // Stored name of a complete attachment, null when there is none (yet)
+    public static String completeFile(long attachmentId) {
+        String file = COMPLETE.get(attachmentId);
+        if (file == null) {
+            Session s = HibernateUtil.getSessionFactory().openSession();
+            try {
+                Attachment attachment = (Attachment) s.get(Attachment.class, attachmentId);
+                if (attachment != null && attachment.isComplete()) {
+                    file = fileName(attachment);
+                    COMPLETE.put(attachmentId, file);
+                }
+            } finally {
+                s.close();
+            }
+        }
+        return file;
+    }
+
+    // The owner, or either side of a chat that carries the attachment
+    public static boolean canRead(int userId, long attachmentId) {
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        try {
+            Attachment attachment = (Attachment) s.get(Attachment.class, attachmentId);
+            if (attachment == null || !attachment.isComplete()) {
+                return false;
+            }
+            if (attachment.getOwnerId() == userId) {
+                return true;
+            }
+            // such a chat is newer than the attachment, so only ids from then on are read (a minute of clock skew allowed)
+            Long chats = s.createQuery("SELECT count(c.id) FROM Chat c WHERE c.id >= :since AND c.files = :files"
+                    + " AND (c.from.id = :userId OR c.to.id = :userId)", Long.class)
+                    .setParameter("since", SnowflakeIdGenerator.floor(SnowflakeIdGenerator.timeOf(attachmentId) - 60_000))
+                    .setParameter("files", Long.toString(attachmentId))
+                    .setParameter("userId", userId)
+                    .uniqueResult();
+            return chats != null && chats > 0;
+        } finally {
+            s.close();
+        }
+    }
+
+    // For a reader that passed canRead; MediaController checks again
+    public static String getUrl(long attachmentId, int userId) {
+        String file = completeFile(attachmentId);
+        return file == null ? "" : ChatService.URL + "media/attachments/" + file + "?id=" + attachmentId + "&userId=" + userId;
+    }
+
+    // For MediaController, null before the folder is known
+    public static File file(String name) {
+        File folder = root;
+        return folder == null ? null : new File(folder, name);
+    }
+
+    // {hash}.{ext}, the only names finish() produces
+    public static boolean isContentHashed(String name) {
+        return name.matches("[0-9a-f]{64}\\.[a-z0-9]+");
+    }
+
+    private static File partFile(long attachmentId) {
+        return new File(new File(root, "partial"), attachmentId + ".part");
+    }
+
+    private static String fileName(Attachment attachment) {
+        return attachment.getHash() + "." + attachment.getExt();
+    }
+
+    private static String extension(String name) {
+        if (name != null && name.lastIndexOf('.') >= 0) {
+            String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+            if (ext.matches("[a-z0-9]{1,10}")) {
+                return ext;
+            }
+        }
+        return "bin";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE has it
+        }
+    }
+}
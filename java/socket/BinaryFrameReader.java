@@ -0,0 +1,177 @@
+package socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a BinaryProtocol frame for the commands. The top-level object has no
+ * header of its own and ends with the buffer.
+ */
+public class BinaryFrameReader implements FieldReader {
+
+    // no command reads anything this deep, deeper input is rejected instead of recursing
+    private static final int MAX_DEPTH = 32;
+
+    private final ByteBuffer in;
+    private int depth;
+    // kind of the value after the last nextName()
+    private int kind = -1;
+
+    public BinaryFrameReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        if (depth == 0) {
+            depth = 1;
+            return;
+        }
+        expect(BinaryProtocol.OBJECT);
+        if (depth >= MAX_DEPTH) {
+            throw new IOException("Frame nested deeper than " + MAX_DEPTH);
+        }
+        depth++;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        if (depth == 1) {
+            if (in.hasRemaining()) {
+                throw new IOException("Trailing bytes after frame");
+            }
+            depth = 0;
+            return;
+        }
+        if ((BinaryProtocol.readVarint(in) & 7) != BinaryProtocol.END) {
+            throw new IOException("Expected end of object");
+        }
+        depth--;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        if (depth == 1) {
+            return in.hasRemaining();
+        }
+        int position = in.position();
+        long header = BinaryProtocol.readVarint(in);
+        in.position(position);
+        return (header & 7) != BinaryProtocol.END;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        long header = BinaryProtocol.readVarint(in);
+        kind = (int) (header & 7);
+        int tag = (int) (header >>> 3);
+        return tag == 0 ? BinaryProtocol.readString(in) : BinaryProtocol.fieldName(tag);
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        int k = take();
+        switch (k) {
+            case BinaryProtocol.STRING:
+                return BinaryProtocol.readString(in);
+            case BinaryProtocol.SYMBOL:
+                return BinaryProtocol.typeName((int) BinaryProtocol.readVarint(in));
+            case BinaryProtocol.INT:
+                return String.valueOf(BinaryProtocol.readZigzag(in));
+            case BinaryProtocol.NULL:
+                return null;
+            default:
+                throw new IOException("Expected a string, got kind " + k);
+        }
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw new IOException("Number out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        int k = take();
+        switch (k) {
+            case BinaryProtocol.INT:
+                return BinaryProtocol.readZigzag(in);
+            case BinaryProtocol.STRING:
+                return Long.parseLong(BinaryProtocol.readString(in));
+            default:
+                throw new IOException("Expected a number, got kind " + k);
+        }
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        skip(take(), depth);
+    }
+
+    // Lengths and nesting come from the client, both are checked so bad input is an IOException
+    private void skip(int k, int level) throws IOException {
+        switch (k) {
+            case BinaryProtocol.INT:
+            case BinaryProtocol.SYMBOL:
+                BinaryProtocol.readVarint(in);
+                break;
+            case BinaryProtocol.STRING:
+                advance(BinaryProtocol.readVarint(in));
+                break;
+            case BinaryProtocol.DOUBLE:
+                advance(8);
+                break;
+            case BinaryProtocol.NULL:
+                break;
+            case BinaryProtocol.OBJECT:
+            case BinaryProtocol.ARRAY: {
+                if (level >= MAX_DEPTH) {
+                    throw new IOException("Frame nested deeper than " + MAX_DEPTH);
+                }
+                // children each carry a header, inline names only appear in objects
+                while (true) {
+                    long header = BinaryProtocol.readVarint(in);
+                    int child = (int) (header & 7);
+                    if (child == BinaryProtocol.END) {
+                        break;
+                    }
+                    if (k == BinaryProtocol.OBJECT && (header >>> 3) == 0) {
+                        BinaryProtocol.readString(in);
+                    }
+                    skip(child, level + 1);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unexpected kind " + k);
+        }
+    }
+
+    private void advance(long length) throws IOException {
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Truncated value");
+        }
+        in.position(in.position() + (int) length);
+    }
+
+    private void expect(int expected) throws IOException {
+        int k = take();
+        if (k != expected) {
+            throw new IOException("Expected kind " + expected + ", got " + k);
+        }
+    }
+
+    // The value kind comes from the field header; array elements are not read by commands
+    private int take() throws IOException {
+        if (kind < 0) {
+            throw new IOException("Value read without a field name");
+        }
+        int k = kind;
+        kind = -1;
+        return k;
+    }
+}
@@ -0,0 +1,231 @@
+package socket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A JsonWriter that emits BinaryProtocol instead of text. Passing it to
+ * Gson.toJson(Object, Type, JsonWriter) reuses the registered TypeAdapters,
+ * so payloads are written straight to binary without a JSON detour.
+ */
+public class BinaryFrameWriter extends JsonWriter {
+
+    private static final int MAX_DEPTH = 32;
+    private static final Gson RAW = new Gson();
+
+    private byte[] buf = new byte[256];
+    private int size;
+    // true = object, false = array; index 0 is the top-level object
+    private final boolean[] objects = new boolean[MAX_DEPTH];
+    private int depth = -1;
+    private String pendingName;
+
+    public BinaryFrameWriter() {
+        super(Writer.nullWriter());
+    }
+
+    public static byte[] encode(Gson gson, Object payload) {
+        BinaryFrameWriter out = new BinaryFrameWriter();
+        gson.toJson(payload, payload.getClass(), out);
+        return out.toByteArray();
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        if (depth >= 0) {
+            header(BinaryProtocol.OBJECT);
+        }
+        push(true);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        pop();
+        if (depth >= 0) {
+            writeVarint(BinaryProtocol.END);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        if (depth < 0) {
+            throw new IOException("Binary frames must be objects");
+        }
+        header(BinaryProtocol.ARRAY);
+        push(false);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        pop();
+        writeVarint(BinaryProtocol.END);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        pendingName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if ("type".equals(pendingName)) {
+            int tag = BinaryProtocol.typeTag(value);
+            if (tag >= 0) {
+                header(BinaryProtocol.SYMBOL);
+                writeVarint(tag);
+                return this;
+            }
+        }
+        header(BinaryProtocol.STRING);
+        writeString(value);
+        return this;
+    }
+
+    // Raw JSON from a TypeAdapter is parsed and written as values, not as a string holding JSON
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        try {
+            RAW.toJson(JsonParser.parseString(value), this);
+        } catch (JsonParseException e) {
+            throw new IOException("Malformed raw JSON value", e);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (pendingName != null && !getSerializeNulls()) {
+            pendingName = null; // same as JsonWriter: drop the field
+            return this;
+        }
+        header(BinaryProtocol.NULL);
+        return this;
+    }
+
+    // No kind is left for booleans, see BinaryProtocol
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        return value(value ? 1L : 0L);
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        return value == null ? nullValue() : value(value.booleanValue());
+    }
+
+    // Gson 2.9.1+ calls this for float fields
+    public JsonWriter value(float value) throws IOException {
+        return value((double) value);
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        if (value == (long) value) {
+            return value((long) value);
+        }
+        header(BinaryProtocol.DOUBLE);
+        long bits = Double.doubleToLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            writeByte((int) (bits >>> (8 * i)));
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        header(BinaryProtocol.INT);
+        writeVarint((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return value(value.longValue());
+        }
+        return value(value.doubleValue());
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void push(boolean object) throws IOException {
+        if (++depth >= MAX_DEPTH) {
+            throw new IOException("Frame nested too deeply");
+        }
+        objects[depth] = object;
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    private void header(int kind) throws IOException {
+        if (objects[depth]) {
+            int tag = BinaryProtocol.fieldTag(pendingName);
+            writeVarint(((long) tag << 3) | kind);
+            if (tag == 0) {
+                writeString(pendingName);
+            }
+            pendingName = null;
+        } else {
+            writeVarint(kind);
+        }
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buf[size++] = (byte) b;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary form of the JSON frames, used when the client negotiates
+ * the "chatify.bin" subprotocol. It carries the same object/array/value
+ * model as the JSON protocol, so both share the commands and TypeAdapters.
+ *
+ * A frame is the fields of the top-level object. Every field and array
+ * element starts with a varint header (tag << 3 | kind). The tag indexes
+ * FIELDS; tag 0 inside an object means the field name follows as a string.
+ * Integers are zigzag varints, strings are a varint length plus UTF-8, and
+ * known "type" values are sent as a varint index into TYPES.
+ *
+ * The kind has three bits and all eight values are taken, so JSON values
+ * without a kind of their own are mapped: true/false are INT 1/0 (a client
+ * knows from the field which ones are booleans), and raw JSON a TypeAdapter
+ * writes through jsonValue() is sent as the OBJECT/ARRAY/... it contains,
+ * never as a STRING. Adding a kind would need a new subprotocol name.
+ *
+ * Both tables are append-only: clients that are already deployed rely on
+ * the indexes.
+ */
+public final class BinaryProtocol {
+
+    public static final String SUBPROTOCOL = "chatify.bin";
+
+    public static final int INT = 0;
+    public static final int STRING = 1;
+    public static final int OBJECT = 2;
+    public static final int ARRAY = 3;
+    public static final int NULL = 4;
+    public static final int DOUBLE = 5;
+    public static final int SYMBOL = 6;
+    public static final int END = 7;
+
+    private static final String[] FIELDS = {
+        null, "type", "payload", "userId", "friendId", "toUserId", "fromId", "toId",
+        "message", "chatId", "user", "firstName", "lastName", "countryCode", "contactNo",
+        "id", "from", "to", "files", "status", "createdAt", "updatedAt",
+        "friendName", "lastMessage", "lastTimeStamp", "unreadCount", "profileImage",
+        "displayName", "responseStatus", "before", "limit", "nextCursor",
+        "readerId", "lastReadId", "recipientId", "lastDeliveredId", "count",
+        "since", "messages", "deleted", "read", "delivered", "contacts", "version", "more", "reset",
+        "baseVersion", "upserts", "removes", "avatarSize", "attachmentId"
+    };
+
+    private static final String[] TYPES = {
+        "PING", "PONG", "send_chat", "chat", "get_chat_list", "friend_list",
+        "get_single_chat", "single_chat", "send_message", "new_message",
+        "get_friend_data", "friend_data", "get_all_users", "all_users",
+        "save_new_contact", "new_contact_response_text", "set_user_profile",
+        "user_profile", "delete_message", "read_receipt",
+        "delivered", "sync", "friend_list_delta"
+    };
+
+    private static final Map<String, Integer> FIELD_TAGS = index(FIELDS);
+    private static final Map<String, Integer> TYPE_TAGS = index(TYPES);
+
+    private BinaryProtocol() {
+    }
+
+    private static Map<String, Integer> index(String[] names) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != null) {
+                map.put(names[i], i);
+            }
+        }
+        return map;
+    }
+
+    // 0 when the name has no tag and must be sent inline
+    public static int fieldTag(String name) {
+        Integer tag = FIELD_TAGS.get(name);
+        return tag == null ? 0 : tag;
+    }
+
+    public static String fieldName(int tag) {
+        return tag < FIELDS.length ? FIELDS[tag] : "#" + tag;
+    }
+
+    // -1 when the value is not a known frame type
+    public static int typeTag(String type) {
+        Integer tag = TYPE_TAGS.get(type);
+        return tag == null ? -1 : tag;
+    }
+
+    public static String typeName(int tag) throws IOException {
+        if (tag < 0 || tag >= TYPES.length) {
+            throw new IOException("Unknown frame type tag " + tag);
+        }
+        return TYPES[tag];
+    }
+
+    public static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new IOException("Truncated varint");
+            }
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static long readZigzag(ByteBuffer in) throws IOException {
+        long v = readVarint(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public static String readString(ByteBuffer in) throws IOException {
+        int length = (int) readVarint(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Truncated string");
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,258 +1,570 @@
-package socket;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import entity.Chat;
-import entity.FriendList;
-import entity.Status;
-import entity.User;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import javax.websocket.Session;
-import org.hibernate.Criteria;
-import org.hibernate.Transaction;
-import org.hibernate.criterion.Criterion;
-import org.hibernate.criterion.Order;
-import org.hibernate.criterion.Restrictions;
-import util.HibernateUtil;
-
-public class ChatService {
-
-    private static final ConcurrentHashMap<Integer, Session> SESSIONS = new ConcurrentHashMap<>();
-    private static final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss").create();
-    public static final String URL = "https://0219c9f7612d.ngrok-free.app/Chatify/";
-
-    public static void register(int userId, Session session) {
-        SESSIONS.put(userId, session);
-    }
-
-    public static void unregister(int userId) {
-        SESSIONS.remove(userId);
-    }
-
-    public static void sendToUser(int userId, Object payload) {
-        Session ws = SESSIONS.get(userId);
-        if (ws != null && ws.isOpen()) {
-            try {
-                System.out.println(GSON.toJson(payload));
-                ws.getBasicRemote().sendText(GSON.toJson(payload));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    public static List<ChatSummary> getFriendChatsForUser(int userId) {
-        org.hibernate.Session session = HibernateUtil.getSessionFactory().openSession();
-        try {
-            Criteria friendListCriteria = session.createCriteria(FriendList.class);
-            friendListCriteria.add(Restrictions.eq("userId.id", userId));
-            friendListCriteria.add(Restrictions.eq("status", Status.ACTIVE));
-            List<FriendList> friendList = friendListCriteria.list();// my friends list
-
-            Map<Integer, ChatSummary> map = new LinkedHashMap<>();
-            for (FriendList fl : friendList) {
-                User myFriend = fl.getFriendId();
-                Criteria c1 = session.createCriteria(Chat.class);
-                Criterion rest1 = Restrictions.and(Restrictions.eq("from.id", userId),
-                        Restrictions.eq("to.id", myFriend.getId()));
-                Criterion rest2 = Restrictions.and(Restrictions.eq("from.id", myFriend.getId()),
-                        Restrictions.eq("to.id", userId));
-                Criterion rest3 = Restrictions.or(rest1, rest2);
-                c1.add(rest3);
-                c1.addOrder(Order.desc("updatedAt"));
-
-                List<Chat> chats = c1.list();
-
-                if (!chats.isEmpty()) {
-
-                    int unread = 0;
-                    for (Chat c : chats) {
-                        if (c.getFrom().getId() == myFriend.getId()
-                                && c.getTo().getId() == userId
-                                && c.getStatus().equals(Status.DELIVERED)) {
-                            unread += 1;
-                        }
-                    }
-                    if (!map.containsKey(myFriend.getId())) {
-                        String profileImage = ProfileService.getProfileUrl(myFriend.getId());
-                        map.put(myFriend.getId(), new ChatSummary(
-                                myFriend.getId(),
-                                myFriend.getFirstName() + " " + myFriend.getLastName(),
-                                chats.get(0).getMessage(),
-                                chats.get(0).getUpdatedAt(),
-                                unread,
-                                profileImage
-                        ));
-                    }
-                }
-            }
-
-            return new ArrayList<>(map.values());
-        } finally {
-            session.close();
-        }
-    }
-
-    public static void deliverChat(Chat chat) {
-        org.hibernate.Session session = HibernateUtil.getSessionFactory().openSession();
-        Transaction tr = session.beginTransaction();
-        session.persist(chat);
-        tr.commit();
-        session.close();
-
-        Map<String, Object> envelope = new HashMap<>();
-        envelope.put("type", "chat");
-        envelope.put("payload", chat);
-
-        sendToUser(chat.getTo().getId(), envelope);
-        sendToUser(chat.getFrom().getId(), envelope);
-
-        sendToUser(chat.getTo().getId(), friendListEnvelope(getFriendChatsForUser(chat.getTo().getId())));
-        sendToUser(chat.getFrom().getId(), friendListEnvelope(getFriendChatsForUser(chat.getFrom().getId())));
-    }
-
-    public static Map<String, Object> friendListEnvelope(List<ChatSummary> list) {
-        Map<String, Object> envelope = new HashMap<>();
-        envelope.put("type", "friend_list");
-        envelope.put("payload", list);
-        return envelope;
-    }
-
-    public static List<Chat> getChatHistory(int userId, int friendId) {
-        org.hibernate.Session session = HibernateUtil.getSessionFactory().openSession();
-        try {
-            Criteria c = session.createCriteria(Chat.class);
-            c.add(Restrictions.or(
-                    Restrictions.and(
-                            Restrictions.eq("from.id", userId),
-                            Restrictions.eq("to.id", friendId)
-                    ),
-                    Restrictions.and(
-                            Restrictions.eq("from.id", friendId),
-                            Restrictions.eq("to.id", userId)
-                    )
-            ));
-            c.addOrder(Order.desc("createdAt"));
-            List<Chat> list = c.list();
-
-            Transaction tr = session.beginTransaction();
-
-            for (Chat chat : list) {
-
-                if (chat.getFrom().getId() == friendId
-                        && chat.getTo().getId() == userId
-                        && chat.getStatus().equals(Status.DELIVERED)) {
-                    chat.setStatus(Status.READ);
-                    session.update(chat);
-                }
-            }
-            tr.commit();
-            return list;
-        } finally {
-            session.close();
-        }
-    }
-
-    public static Map<String, Object> singleChatEnvelope(List<Chat> chats) {
-        Map<String, Object> envelope = new HashMap<>();
-        envelope.put("type", "single_chat");
-        envelope.put("payload", chats);
-
-        return envelope;
-    }
-
-    public static void saveNewChat(int userId, int friendId, String message) {
-
-        org.hibernate.Session s = HibernateUtil.getSessionFactory().openSession();
-        Transaction tr = s.beginTransaction();
-        User me = (User) s.get(User.class, userId);
-        User friend = (User) s.get(User.class, friendId);
-
-        Criteria c1 = s.createCriteria(FriendList.class);
-        // see if I have a friend
-        c1.add(Restrictions.and(Restrictions.eq("userId", me), Restrictions.eq("friendId", friend)));
-        FriendList fl1 = (FriendList) c1.uniqueResult();
-        if (fl1 == null) {
-            FriendList friend1 = new FriendList();
-            friend1.setFriendId(friend);
-            friend1.setUserId(me);
-            friend1.setStatus(Status.ACTIVE);
-            s.save(friend1);
-        }
-
-        Criteria c2 = s.createCriteria(FriendList.class);
-        c2.add(Restrictions.and(Restrictions.eq("userId", friend), Restrictions.eq("friendId", me)));
-        FriendList fl2 = (FriendList) c2.uniqueResult();
-        if (fl2 == null) {
-            FriendList friend1 = new FriendList();
-            friend1.setFriendId(me);
-            friend1.setUserId(friend);
-            friend1.setStatus(Status.ACTIVE);
-            s.save(friend1);
-        }
-
-        Chat chat = new Chat();
-        chat.setFrom(me);
-        chat.setTo(friend);
-        chat.setMessage(message);
-        chat.setCreatedAt(new Date());
-        chat.setUpdatedAt(new Date());
-        chat.setFiles("FILE:");
-        s.save(chat);
-        tr.commit();
-        s.close();
-
-        Map<String, Object> envelope = new HashMap();
-        envelope.put("type", "new_message");
-        envelope.put("payload", chat);
-
-        // Update both side -> SingleChatScreen
-        ChatService.sendToUser(chat.getFrom().getId(), envelope); // from single chat
-        ChatService.sendToUser(chat.getTo().getId(), envelope); // to single chat
-
-        //Update both side -> HomeChatList
-        List<ChatSummary> fromList = ChatService.getFriendChatsForUser(chat.getFrom().getId());//from List
-        List<ChatSummary> toList = ChatService.getFriendChatsForUser(chat.getTo().getId()); // toList
-        Map<String, Object> fromMap = ChatService.friendListEnvelope(fromList); // from
-        Map<String, Object> toMap = ChatService.friendListEnvelope(toList); //to
-
-        ChatService.sendToUser(chat.getFrom().getId(), fromMap); // update from home chat
-        ChatService.sendToUser(chat.getTo().getId(), toMap); // update to home chat
-    }
-
-    public static Map<String, Object> deleteMessage(int chatId, int userId) {
-        org.hibernate.Session s = HibernateUtil.getSessionFactory().openSession();
-        Transaction tx = s.beginTransaction();
-
-        Chat chat = (Chat) s.get(Chat.class, chatId);
-        Map<String, Object> envelope = new HashMap<>();
-
-        if (chat != null) {
-            s.delete(chat);
-            tx.commit();
-
-            envelope.put("type", "delete_message");
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("chatId", chatId); // <-- send chatId
-            payload.put("message", "Message deleted"); // <-- new text
-            envelope.put("payload", payload);
-        } else {
-            envelope.put("type", "delete_message");
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("chatId", chatId);
-            payload.put("message", "Message not found");
-            envelope.put("payload", payload);
-        }
-
-        s.close();
-        return envelope;
-    }
-
-}
+package socket;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import dto.ChatDTO;
+import dto.UserDTO;
+import entity.ChangeLog;
+import entity.Chat;
+import entity.FriendList;
+import entity.Status;
+import entity.User;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.websocket.Session;
+import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.query.Query;
+import util.HibernateUtil;
+
+public class ChatService {
+
+    // One entry per live device. Arrays are replaced, never mutated, so fan-out reads them without locks.
+    private static final ConcurrentHashMap<Integer, OutboundQueue[]> SESSIONS = new ConcurrentHashMap<>();
+    private static final Gson GSON = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss")
+            .registerTypeAdapter(ChatDTO.class, new ChatDTO.Adapter())
+            .registerTypeAdapter(UserDTO.class, new UserDTO.Adapter())
+            .registerTypeAdapter(ChatSummary.class, new ChatSummary.Adapter())
+            .create();
+    public static final String URL = "https://0219c9f7612d.ngrok-free.app/Chatify/";
+    private static final MessageRouter ROUTER = MessageRouter.fromConfig();
+    private static final ChatWriter WRITER = ChatWriter.fromConfig();
+    private static final ChatDTO.Adapter CHAT_ADAPTER = new ChatDTO.Adapter();
+    // -Dchatify.history.pageSize=... messages per single_chat page unless the client asks for fewer
+    private static final int PAGE_SIZE = Integer.getInteger("chatify.history.pageSize", 50);
+    private static final int MAX_PAGE_SIZE = 200;
+    // -Dchatify.debug=true prints every outgoing frame and rejected chat
+    private static final boolean DEBUG = Boolean.getBoolean("chatify.debug");
+
+    static {
+        ROUTER.start();
+        WRITER.start();
+    }
+
+    // Call on shutdown: commits queued chats and leaves the cluster
+    public static void shutdown() {
+        WRITER.stop();
+        ROUTER.stop();
+    }
+
+    // Blocks the caller's frame queue until the group commit holding chat is durable
+    private static boolean persist(Chat chat) {
+        if (chat.getFrom() == null || chat.getTo() == null || chat.getMessage() == null) {
+            debug("⚠️ Incomplete chat not saved"); // would fail the whole group commit
+            return false;
+        }
+        try {
+            WRITER.submit(chat).join();
+            RecentChatCache.append(chat.getConversationId(), ChatDTO.from(chat));
+            return true;
+        } catch (CompletionException e) {
+            debug("⚠️ Chat " + chat.getId() + " not saved"); // ChatWriter already logged the failure
+            return false;
+        }
+    }
+
+    private static void debug(String line) {
+        if (DEBUG) {
+            System.out.println(line);
+        }
+    }
+
+    // The announcement is made inside compute(), which runs one at a time per user, so peers
+    // see online/offline in the same order as the registry changed. announce() never blocks.
+    public static void register(int userId, Session session) {
+        OutboundQueue queue = new OutboundQueue(session);
+        SESSIONS.compute(userId, (id, queues) -> {
+            if (queues == null) {
+                ROUTER.userOnline(userId);
+                return new OutboundQueue[]{queue};
+            }
+            OutboundQueue[] copy = Arrays.copyOf(queues, queues.length + 1);
+            copy[queues.length] = queue;
+            return copy;
+        });
+    }
+
+    // Returns true when this was the user's last device
+    public static boolean unregister(int userId, Session session) {
+        boolean[] last = new boolean[1];
+        SESSIONS.computeIfPresent(userId, (id, queues) -> {
+            int n = 0;
+            OutboundQueue[] copy = new OutboundQueue[queues.length];
+            for (OutboundQueue queue : queues) {
+                if (queue.getSession() != session) {
+                    copy[n++] = queue;
+                }
+            }
+            if (n == 0) {
+                ROUTER.userOffline(userId); // same per-user serialization as register
+                last[0] = true;
+                return null;
+            }
+            return Arrays.copyOf(copy, n);
+        });
+        return last[0];
+    }
+
+    public static boolean hasOtherSessions(int userId, Session session) {
+        OutboundQueue[] queues = SESSIONS.get(userId);
+        if (queues != null) {
+            for (OutboundQueue queue : queues) {
+                if (queue.getSession() != session && queue.isOpen()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Has a live session on this node or any other
+    public static boolean isConnected(int userId) {
+        return SESSIONS.containsKey(userId) || ROUTER.isRemote(userId);
+    }
+
+    public static void sendToUser(int userId, Object payload) {
+        if (isConnected(userId)) {
+            sendToUser(userId, encode(payload));
+        }
+    }
+
+    // Never blocks: the frame is queued for local devices and handed to the router for the rest
+    public static void sendToUser(int userId, EncodedFrame frame) {
+        deliverLocal(userId, frame);
+        ROUTER.forward(userId, frame);
+    }
+
+    // Sessions on this node only, also the entry point for frames from other nodes
+    public static void deliverLocal(int userId, EncodedFrame frame) {
+        OutboundQueue[] queues = SESSIONS.get(userId);
+        if (queues != null) {
+            for (OutboundQueue queue : queues) {
+                if (queue.isOpen() && queue.accepts(frame)) {
+                    queue.enqueue(frame);
+                }
+            }
+        }
+    }
+
+    // get_chat_list with a version: that session handles friend_list_delta from now on, without one it doesn't
+    public static void setListDeltas(int userId, Session session, boolean deltas) {
+        OutboundQueue[] queues = SESSIONS.get(userId);
+        if (queues != null) {
+            for (OutboundQueue queue : queues) {
+                if (queue.getSession() == session) {
+                    queue.setListDeltas(deltas);
+                }
+            }
+        }
+    }
+
+    // A device of the user may not handle friend_list_delta; sessions on other nodes can't be asked
+    public static boolean hasLegacyListSession(int userId) {
+        OutboundQueue[] queues = SESSIONS.get(userId);
+        if (queues != null) {
+            for (OutboundQueue queue : queues) {
+                if (!queue.wantsListDeltas()) {
+                    return true;
+                }
+            }
+        }
+        return ROUTER.isRemote(userId);
+    }
+
+    // Serialise once, then share the frame between all recipients
+    public static EncodedFrame encode(Object payload) {
+        return encode(typeOf(payload), payload);
+    }
+
+    // type is what OutboundQueue and the router see, it may differ from the envelope's
+    public static EncodedFrame encode(String type, Object payload) {
+        EncodedFrame frame = new EncodedFrame(type, GSON.toJson(payload),
+                () -> BinaryFrameWriter.encode(GSON, payload));
+        debug(frame.getText());
+        return frame;
+    }
+
+    // A frame forwarded by another node, only the JSON text travels between nodes
+    public static EncodedFrame remoteFrame(String type, String text) {
+        return textFrame(type, text);
+    }
+
+    // A frame whose JSON was written by hand; the binary form is transcoded on demand
+    public static EncodedFrame textFrame(String type, String text) {
+        return new EncodedFrame(type, text, () -> BinaryFrameWriter.encode(GSON, JsonParser.parseString(text)));
+    }
+
+    private static String typeOf(Object payload) {
+        if (payload instanceof Map) {
+            return (String) ((Map<?, ?>) payload).get("type");
+        }
+        if (payload instanceof JsonObject && ((JsonObject) payload).has("type")) {
+            return ((JsonObject) payload).get("type").getAsString();
+        }
+        return null;
+    }
+
+    public static List<ChatSummary> getFriendChatsForUser(int userId) {
+        return ConversationSummaryService.getSummariesForUser(userId);
+    }
+
+    public static void deliverChat(Chat chat) {
+        if (!persist(chat)) {
+            return;
+        }
+
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "chat");
+        envelope.put("payload", ChatDTO.from(chat));
+
+        EncodedFrame frame = encode(envelope);
+        sendToUser(chat.getTo().getId(), frame);
+        sendToUser(chat.getFrom().getId(), frame);
+
+        FriendListService.changed(chat.getTo().getId(), chat.getFrom().getId());
+        FriendListService.changed(chat.getFrom().getId(), chat.getTo().getId());
+    }
+
+    public static Map<String, Object> friendListEnvelope(List<ChatSummary> list) {
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "friend_list");
+        envelope.put("payload", list);
+        return envelope;
+    }
+
+    // Streams one page of history (newest first) straight into the frame, no List<Chat> in between.
+    // before is the nextCursor of the previous page, null for the newest page.
+    public static void sendChatPage(int userId, int friendId, String before, int limit) {
+        int size = limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : PAGE_SIZE;
+        long cursor = parseCursor(before);
+        long conversationId = Chat.conversationOf(userId, friendId);
+
+        if (cursor == 0) {
+            RecentChatCache.Page page = RecentChatCache.firstPage(conversationId, size);
+            if (page != null) {
+                sendCachedPage(userId, friendId, conversationId, size, page);
+                return;
+            }
+        }
+
+        StringWriter text = new StringWriter();
+        long watermark = 0;
+        long stamp = RecentChatCache.stamp(conversationId);
+        List<ChatDTO> tail = cursor == 0 ? new ArrayList<>(size) : null; // first page also fills the cache
+        boolean more = false;
+
+        org.hibernate.Session session = HibernateUtil.getSessionFactory().openSession();
+        try {
+            Transaction tr = session.beginTransaction();
+            if (cursor == 0) {
+                // opening the chat reads everything the friend sent so far
+                watermark = ConversationSummaryService.advanceReadWatermark(session, userId, friendId);
+            }
+
+            Query<Object[]> q = session.createQuery("SELECT c.id, c.from.id, c.to.id, c.message, c.files, c.status, c.createdAt, c.updatedAt"
+                    + " FROM Chat c"
+                    + " WHERE c.conversationId = :conversationId"
+                    + (cursor == 0 ? "" : " AND c.id < :id")
+                    + " ORDER BY c.id DESC", Object[].class); // ids are time-ordered
+            q.setParameter("conversationId", conversationId);
+            if (cursor != 0) {
+                q.setParameter("id", cursor);
+            }
+            q.setMaxResults(size + 1); // one extra row tells us whether there is another page
+            q.setFetchSize(size + 1);
+            q.setReadOnly(true);
+
+            JsonWriter out = new JsonWriter(text);
+            beginPage(out, friendId, cursor != 0 ? before : null);
+            ChatDTO row = new ChatDTO(); // reused for every row unless it goes to the cache
+            int written = 0;
+            ScrollableResults rows = q.scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                while (rows.next()) {
+                    if (written == size) {
+                        more = true;
+                        break;
+                    }
+                    Object[] r = rows.get();
+                    if (tail != null) {
+                        row = new ChatDTO();
+                        tail.add(row);
+                    }
+                    row.setId((Long) r[0]);
+                    row.setFromId((Integer) r[1]);
+                    row.setToId((Integer) r[2]);
+                    row.setMessage((String) r[3]);
+                    row.setFiles((String) r[4]);
+                    row.setStatus((Status) r[5]);
+                    row.setCreatedAt((Date) r[6]);
+                    row.setUpdatedAt((Date) r[7]);
+                    CHAT_ADAPTER.write(out, row);
+                    written++;
+                }
+            } finally {
+                rows.close();
+            }
+            endPage(out, more ? Long.toString(row.getId()) : null);
+            tr.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter doesn't throw
+        } finally {
+            session.close();
+        }
+
+        if (tail != null) {
+            if (watermark > 0) {
+                RecentChatCache.markRead(conversationId, userId, watermark);
+                if (RecentChatCache.stamp(conversationId) == stamp + 1) {
+                    stamp++; // only our own write, the rows already have it
+                }
+            }
+            RecentChatCache.load(conversationId, stamp, tail, !more);
+        }
+
+        EncodedFrame frame = textFrame("single_chat", text.toString());
+        debug(frame.getText());
+        sendToUser(userId, frame);
+
+        if (watermark > 0) {
+            sendToUser(friendId, readReceiptEnvelope(userId, watermark));
+        }
+    }
+
+    // First page of a hot conversation: a DB write only when there is something to mark read
+    private static void sendCachedPage(int userId, int friendId, long conversationId, int size, RecentChatCache.Page page) {
+        long watermark = 0;
+        if (!Boolean.FALSE.equals(RecentChatCache.hasUnread(conversationId, userId))) {
+            org.hibernate.Session session = HibernateUtil.getSessionFactory().openSession();
+            try {
+                Transaction tr = session.beginTransaction();
+                watermark = ConversationSummaryService.advanceReadWatermark(session, userId, friendId);
+                tr.commit();
+            } finally {
+                session.close();
+            }
+            if (watermark > 0) {
+                RecentChatCache.markRead(conversationId, userId, watermark);
+                page = RecentChatCache.firstPage(conversationId, size);
+                if (page == null) { // evicted meanwhile
+                    sendChatPage(userId, friendId, null, size);
+                    sendToUser(friendId, readReceiptEnvelope(userId, watermark));
+                    return;
+                }
+            }
+        }
+
+        StringWriter text = new StringWriter();
+        try {
+            JsonWriter out = new JsonWriter(text);
+            beginPage(out, friendId, null);
+            for (ChatDTO row : page.rows) {
+                CHAT_ADAPTER.write(out, row);
+            }
+            endPage(out, page.hasMore && !page.rows.isEmpty()
+                    ? Long.toString(page.rows.get(page.rows.size() - 1).getId()) : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter doesn't throw
+        }
+
+        EncodedFrame frame = textFrame("single_chat", text.toString());
+        debug(frame.getText());
+        sendToUser(userId, frame);
+
+        if (watermark > 0) {
+            sendToUser(friendId, readReceiptEnvelope(userId, watermark));
+        }
+    }
+
+    private static void beginPage(JsonWriter out, int friendId, String before) throws IOException {
+        out.beginObject();
+        out.name("type").value("single_chat");
+        out.name("friendId").value(friendId);
+        if (before != null) {
+            out.name("before").value(before);
+        }
+        out.name("payload").beginArray();
+    }
+
+    private static void endPage(JsonWriter out, String nextCursor) throws IOException {
+        out.endArray();
+        if (nextCursor != null) {
+            out.name("nextCursor").value(nextCursor);
+        }
+        out.endObject();
+        out.close();
+    }
+
+    // Tells the sender that readerId has read every message up to lastReadId
+    public static Map<String, Object> readReceiptEnvelope(int readerId, long lastReadId) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("readerId", readerId);
+        payload.put("lastReadId", lastReadId);
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "read_receipt");
+        envelope.put("payload", payload);
+        return envelope;
+    }
+
+    // The id of the last chat on the previous page, 0 when absent or malformed (newest page).
+    // Older clients still send "<createdAt millis>_<id>", the id part is all we need.
+    private static long parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cursor.substring(cursor.indexOf('_') + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // attachmentId 0 for a plain message, otherwise a complete upload the sender may read, see AttachmentService
+    public static void saveNewChat(int userId, int friendId, String message, long attachmentId) {
+        if (message == null) {
+            System.out.println("⚠️ Message without text from user " + userId);
+            return;
+        }
+        if (attachmentId != 0 && !AttachmentService.canRead(userId, attachmentId)) {
+            System.out.println("⚠️ Attachment " + attachmentId + " is not complete or not available to user " + userId);
+            return;
+        }
+
+        org.hibernate.Session s = HibernateUtil.getSessionFactory().openSession();
+        Transaction tr = s.beginTransaction();
+        User me = (User) s.get(User.class, userId);
+        User friend = (User) s.get(User.class, friendId);
+        if (me == null || friend == null) {
+            tr.rollback();
+            s.close();
+            System.out.println("⚠️ No user " + (me == null ? userId : friendId) + ", message not sent");
+            return;
+        }
+
+        boolean linkMine = false;
+        boolean linkTheirs = false;
+        // the graph knows active pairs without a query, only a new (or blocked) pair goes to the DB
+        if (!FriendGraph.isFriend(userId, friendId) || !FriendGraph.isFriend(friendId, userId)) {
+            Criteria c1 = s.createCriteria(FriendList.class);
+            // see if I have a friend
+            c1.add(Restrictions.and(Restrictions.eq("userId", me), Restrictions.eq("friendId", friend)));
+            c1.setCacheable(true);
+            c1.setCacheRegion(HibernateUtil.FRIEND_LIST_QUERIES);
+            FriendList fl1 = (FriendList) c1.uniqueResult();
+            if (fl1 == null) {
+                FriendList friend1 = new FriendList();
+                friend1.setFriendId(friend);
+                friend1.setUserId(me);
+                friend1.setStatus(Status.ACTIVE);
+                s.save(friend1);
+                linkMine = true;
+                SyncService.record(s, userId, ChangeLog.Kind.CONTACT, friendId, 0);
+            } else if (fl1.getStatus() == Status.ACTIVE) {
+                linkMine = true; // added through another node since the last reload
+            }
+
+            Criteria c2 = s.createCriteria(FriendList.class);
+            c2.add(Restrictions.and(Restrictions.eq("userId", friend), Restrictions.eq("friendId", me)));
+            c2.setCacheable(true);
+            c2.setCacheRegion(HibernateUtil.FRIEND_LIST_QUERIES);
+            FriendList fl2 = (FriendList) c2.uniqueResult();
+            if (fl2 == null) {
+                FriendList friend1 = new FriendList();
+                friend1.setFriendId(me);
+                friend1.setUserId(friend);
+                friend1.setStatus(Status.ACTIVE);
+                s.save(friend1);
+                linkTheirs = true;
+                SyncService.record(s, friendId, ChangeLog.Kind.CONTACT, userId, 0);
+            } else if (fl2.getStatus() == Status.ACTIVE) {
+                linkTheirs = true;
+            }
+        }
+
+        tr.commit();
+        s.close();
+        if (linkMine) {
+            FriendGraph.add(userId, friendId);
+        }
+        if (linkTheirs) {
+            FriendGraph.add(friendId, userId);
+        }
+
+        Chat chat = new Chat();
+        chat.setFrom(me);
+        chat.setTo(friend);
+        chat.setMessage(message);
+        chat.setCreatedAt(new Date());
+        chat.setUpdatedAt(new Date());
+        chat.setFiles(attachmentId == 0 ? "" : Long.toString(attachmentId)); // the id only, the file is served by MediaController
+        if (!persist(chat)) {
+            return;
+        }
+
+        Map<String, Object> envelope = new HashMap();
+        envelope.put("type", "new_message");
+        envelope.put("payload", ChatDTO.from(chat));
+
+        // Update both side -> SingleChatScreen
+        EncodedFrame frame = ChatService.encode(envelope);
+        ChatService.sendToUser(chat.getFrom().getId(), frame); // from single chat
+        ChatService.sendToUser(chat.getTo().getId(), frame); // to single chat
+
+        //Update both side -> HomeChatList, coalesced into friend_list_delta
+        FriendListService.changed(chat.getFrom().getId(), chat.getTo().getId());
+        FriendListService.changed(chat.getTo().getId(), chat.getFrom().getId());
+    }
+
+    public static Map<String, Object> deleteMessage(long chatId, int userId) {
+        org.hibernate.Session s = HibernateUtil.getSessionFactory().openSession();
+        Transaction tx = s.beginTransaction();
+
+        Chat chat = (Chat) s.get(Chat.class, chatId);
+        Map<String, Object> envelope = new HashMap<>();
+
+        if (chat != null) {
+            int fromId = chat.getFrom().getId();
+            int toId = chat.getTo().getId();
+            s.delete(chat);
+            s.flush();
+            ConversationSummaryService.rebuild(s, fromId, toId);
+            SyncService.record(s, fromId, ChangeLog.Kind.DELETE, toId, chatId);
+            SyncService.record(s, toId, ChangeLog.Kind.DELETE, fromId, chatId);
+            tx.commit();
+            RecentChatCache.remove(chat.getConversationId(), chatId);
+            FriendListService.changed(fromId, toId);
+            FriendListService.changed(toId, fromId);
+
+            envelope.put("type", "delete_message");
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("chatId", chatId); // <-- send chatId
+            payload.put("message", "Message deleted"); // <-- new text
+            envelope.put("payload", payload);
+        } else {
+            envelope.put("type", "delete_message");
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("chatId", chatId);
+            payload.put("message", "Message not found");
+            envelope.put("payload", payload);
+        }
+
+        s.close();
+        return envelope;
+    }
+
+}
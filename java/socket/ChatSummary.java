@@ -1,78 +1,137 @@
-package socket;
-
-import java.util.Date;
-
-/**
- *
- * @author Dilhara
- */
-public class ChatSummary {
-    private int friendId;
-    private String friendName;
-    private String lastMessage;
-    private Date lastTimeStamp;
-    private int unreadCount;
-    private String profileImage;
-
-    public ChatSummary() {
-    }
-
-    public ChatSummary(int friendId, String friendName, String lastMessage, Date lastTimeStamp, int unreadCount, String profileImage) {
-        this.friendId = friendId;
-        this.friendName = friendName;
-        this.lastMessage = lastMessage;
-        this.lastTimeStamp = lastTimeStamp;
-        this.unreadCount = unreadCount;
-        this.profileImage = profileImage;
-    }
-
-    public int getFriendId() {
-        return friendId;
-    }
-
-    public void setFriendId(int friendId) {
-        this.friendId = friendId;
-    }
-
-    public String getFriendName() {
-        return friendName;
-    }
-
-    public void setFriendName(String friendName) {
-        this.friendName = friendName;
-    }
-
-    public String getLastMessage() {
-        return lastMessage;
-    }
-
-    public void setLastMessage(String lastMessage) {
-        this.lastMessage = lastMessage;
-    }
-
-    public Date getLastTimeStamp() {
-        return lastTimeStamp;
-    }
-
-    public void setLastTimeStamp(Date lastTimeStamp) {
-        this.lastTimeStamp = lastTimeStamp;
-    }
-
-    public int getUnreadCount() {
-        return unreadCount;
-    }
-
-    public void setUnreadCount(int unreadCount) {
-        this.unreadCount = unreadCount;
-    }
-
-    public String getProfileImage() {
-        return profileImage;
-    }
-
-    public void setProfileImage(String profileImage) {
-        this.profileImage = profileImage;
-    }
-    
-    
-}
+package socket;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import dto.Wire;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ *
+ * @author Dilhara
+ */
+public class ChatSummary {
+    private int friendId;
+    private String friendName;
+    private String lastMessage;
+    private Date lastTimeStamp;
+    private int unreadCount;
+    private String profileImage;
+
+    public ChatSummary() {
+    }
+
+    public ChatSummary(int friendId, String friendName, String lastMessage, Date lastTimeStamp, int unreadCount, String profileImage) {
+        this.friendId = friendId;
+        this.friendName = friendName;
+        this.lastMessage = lastMessage;
+        this.lastTimeStamp = lastTimeStamp;
+        this.unreadCount = unreadCount;
+        this.profileImage = profileImage;
+    }
+
+    public int getFriendId() {
+        return friendId;
+    }
+
+    public void setFriendId(int friendId) {
+        this.friendId = friendId;
+    }
+
+    public String getFriendName() {
+        return friendName;
+    }
+
+    public void setFriendName(String friendName) {
+        this.friendName = friendName;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(String lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+
+    public Date getLastTimeStamp() {
+        return lastTimeStamp;
+    }
+
+    public void setLastTimeStamp(Date lastTimeStamp) {
+        this.lastTimeStamp = lastTimeStamp;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public String getProfileImage() {
+        return profileImage;
+    }
+
+    public void setProfileImage(String profileImage) {
+        this.profileImage = profileImage;
+    }
+
+    public static class Adapter extends TypeAdapter<ChatSummary> {
+
+        @Override
+        public void write(JsonWriter out, ChatSummary summary) throws IOException {
+            if (summary == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("friendId").value(summary.friendId);
+            Wire.string(out, "friendName", summary.friendName);
+            Wire.string(out, "lastMessage", summary.lastMessage);
+            Wire.date(out, "lastTimeStamp", summary.lastTimeStamp);
+            out.name("unreadCount").value(summary.unreadCount);
+            Wire.string(out, "profileImage", summary.profileImage);
+            out.endObject();
+        }
+
+        @Override
+        public ChatSummary read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ChatSummary summary = new ChatSummary();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "friendId":
+                        summary.friendId = in.nextInt();
+                        break;
+                    case "friendName":
+                        summary.friendName = Wire.nextString(in);
+                        break;
+                    case "lastMessage":
+                        summary.lastMessage = Wire.nextString(in);
+                        break;
+                    case "lastTimeStamp":
+                        summary.lastTimeStamp = Wire.nextDate(in);
+                        break;
+                    case "unreadCount":
+                        summary.unreadCount = in.nextInt();
+                        break;
+                    case "profileImage":
+                        summary.profileImage = Wire.nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return summary;
+        }
+    }
+}
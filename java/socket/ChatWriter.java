@@ -0,0 +1,196 @@
+package socket;
+
+import entity.ChangeLog;
+import entity.Chat;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import util.HibernateUtil;
+import util.SnowflakeIdGenerator;
+
+/**
+ * Group commit for new chats. Senders submit() and get a future; one writer
+ * thread collects whatever arrives within the batch window (or up to the
+ * batch size), inserts it with a single JDBC batch and commits once, then
+ * completes every future in the batch. There is a single writer, so chats are
+ * written, and acknowledged, in submission order. A batch that fails is
+ * written again one chat per transaction, so only the chat at fault fails.
+ */
+public class ChatWriter {
+
+    // Writes one batch durably
+    public interface Sink {
+
+        void write(List<Chat> batch) throws Exception;
+    }
+
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Sink sink;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public ChatWriter(long windowMicros, int maxBatch, Sink sink) {
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        this.sink = sink;
+        this.thread = new Thread(this::run, "chatify-chat-writer");
+        this.thread.setDaemon(true);
+    }
+
+    // -Dchatify.persist.windowMicros=... how long the writer waits to fill a batch
+    // -Dchatify.persist.maxBatch=... chats per transaction
+    public static ChatWriter fromConfig() {
+        return new ChatWriter(Long.getLong("chatify.persist.windowMicros", 250L),
+                Integer.getInteger("chatify.persist.maxBatch", 128),
+                ChatWriter::insert);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Writes what is already queued, then stops
+    public void stop() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The chat has its id as soon as this returns, before it is durable
+    public CompletableFuture<Chat> submit(Chat chat) {
+        if (chat.getId() == 0) {
+            chat.setId(SnowflakeIdGenerator.next());
+        }
+        Pending p = new Pending(chat);
+        if (!running) {
+            p.future.completeExceptionally(new IllegalStateException("Chat writer stopped"));
+            return p.future;
+        }
+        queue.add(p);
+        return p.future;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = running ? queue.take() : queue.poll();
+                if (first == null) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 && running ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() was called, drain what's left without waiting
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        List<Chat> chats = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            chats.add(p.chat);
+        }
+        try {
+            sink.write(chats);
+        } catch (Throwable e) {
+            if (batch.size() == 1) {
+                System.out.println("⚠️ Chat " + batch.get(0).chat.getId() + " not saved");
+                e.printStackTrace();
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+            System.out.println("⚠️ Chat batch of " + batch.size() + " failed, writing one by one");
+            e.printStackTrace();
+            for (Pending p : batch) {
+                commit(Collections.singletonList(p));
+            }
+            return;
+        }
+        for (Pending p : batch) {
+            p.future.complete(p.chat);
+        }
+    }
+
+    // Default sink: one JDBC batch insert plus the summary rows, one commit
+    private static void insert(List<Chat> chats) {
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        Transaction tr = s.beginTransaction();
+        try {
+            s.doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO chat (id, conversation_id, from_user, to_user, message, files, status, created_at, updated_at)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (Chat chat : chats) {
+                        Date now = new Date();
+                        if (chat.getCreatedAt() == null) {
+                            chat.setCreatedAt(now);
+                        }
+                        if (chat.getUpdatedAt() == null) {
+                            chat.setUpdatedAt(now);
+                        }
+                        chat.setConversationId(Chat.conversationOf(chat.getFrom().getId(), chat.getTo().getId()));
+                        ps.setLong(1, chat.getId());
+                        ps.setLong(2, chat.getConversationId());
+                        ps.setInt(3, chat.getFrom().getId());
+                        ps.setInt(4, chat.getTo().getId());
+                        ps.setString(5, chat.getMessage());
+                        ps.setString(6, chat.getFiles());
+                        ps.setString(7, chat.getStatus().name());
+                        ps.setTimestamp(8, new Timestamp(chat.getCreatedAt().getTime()));
+                        ps.setTimestamp(9, new Timestamp(chat.getUpdatedAt().getTime()));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+            ConversationSummaryService.onChatsSaved(s, chats);
+            for (Chat chat : chats) {
+                SyncService.record(s, chat.getFrom().getId(), ChangeLog.Kind.NEW, chat.getTo().getId(), chat.getId());
+                SyncService.record(s, chat.getTo().getId(), ChangeLog.Kind.NEW, chat.getFrom().getId(), chat.getId());
+            }
+            tr.commit();
+        } catch (RuntimeException e) {
+            tr.rollback();
+            throw e;
+        } finally {
+            s.close();
+        }
+    }
+
+    private static class Pending {
+
+        private final Chat chat;
+        private final CompletableFuture<Chat> future = new CompletableFuture<>();
+
+        Pending(Chat chat) {
+            this.chat = chat;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package socket;
+
+import java.io.IOException;
+import javax.websocket.Session;
+
+/**
+ * One decoded client frame. FrameDecoder creates the command for the frame's
+ * type and streams every other key into read(), so fields land directly in
+ * primitive members with no intermediate map. The same read() serves JSON
+ * text frames and BinaryProtocol frames.
+ */
+public abstract class Command {
+
+    // Called once per key except "type". Keys a command doesn't know must be skipped.
+    protected void read(String name, FieldReader in) throws IOException {
+        in.skipValue();
+    }
+
+    public abstract void execute(int userId);
+
+    // With the session the frame came in on, for commands whose reply depends on that client
+    public void execute(int userId, Session session) {
+        execute(userId);
+    }
+}
@@ -0,0 +1,307 @@
+package socket;
+
+import com.google.gson.JsonObject;
+import entity.Chat;
+import entity.Status;
+import entity.User;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+import javax.websocket.Session;
+import util.HibernateUtil;
+
+/**
+ * The client frame types, one Command per "type". Registered in FrameDecoder.
+ */
+public class Commands {
+
+    public static class Ping extends Command {
+
+        @Override
+        public void execute(int userId) {
+            JsonObject responseObject = new JsonObject();
+            responseObject.addProperty("type", "PONG");
+            ChatService.sendToUser(userId, responseObject);
+        }
+    }
+
+    public static class SendChat extends Command {
+
+        private int fromId;
+        private int toId;
+        private String message;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            switch (name) {
+                case "fromId":
+                    fromId = in.nextInt();
+                    break;
+                case "toId":
+                    toId = in.nextInt();
+                    break;
+                case "message":
+                    message = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            org.hibernate.Session s = HibernateUtil.getSessionFactory().openSession();
+            User fromUser;
+            User toUser;
+            try {
+                fromUser = (User) s.get(User.class, fromId);
+                toUser = (User) s.get(User.class, toId);
+            } finally {
+                s.close();
+            }
+
+            if (fromUser != null && toUser != null) {
+                Chat chat = new Chat(fromUser, message, toUser, "", Status.SENT);
+                chat.setCreatedAt(new Date());
+                chat.setUpdatedAt(new Date());
+                ChatService.deliverChat(chat);
+            }
+        }
+    }
+
+    public static class GetChatList extends Command {
+
+        private boolean deltas; // "version" present, even 0: the client handles friend_list_delta
+        private long version; // of the list the client holds, 0 for none
+        private int avatarSize; // pixels, 0 keeps the current preference
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            if ("version".equals(name)) {
+                deltas = true;
+                version = in.nextLong();
+            } else if ("avatarSize".equals(name)) {
+                avatarSize = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            execute(userId, null);
+        }
+
+        @Override
+        public void execute(int userId, Session session) {
+            ProfileService.setPreferredSize(userId, avatarSize);
+            FriendListService.sendList(userId, session, deltas, version);
+        }
+    }
+
+    public static class GetSingleChat extends Command {
+
+        private int friendId;
+        private String before;
+        private int limit;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            switch (name) {
+                case "friendId":
+                    friendId = in.nextInt();
+                    break;
+                case "before":
+                    before = in.nextString();
+                    break;
+                case "limit":
+                    limit = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            ChatService.sendChatPage(userId, friendId, before, limit);
+            if (before == null) { // older pages don't change unread counts
+                FriendListService.changed(userId, friendId);
+            }
+        }
+    }
+
+    public static class SendMessage extends Command {
+
+        private int toUserId;
+        private String message;
+        private long attachmentId;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            switch (name) {
+                case "toUserId":
+                    toUserId = in.nextInt();
+                    break;
+                case "message":
+                    message = in.nextString();
+                    break;
+                case "attachmentId":
+                    attachmentId = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            ChatService.saveNewChat(userId, toUserId, message, attachmentId);
+        }
+    }
+
+    public static class GetFriendData extends Command {
+
+        private int friendId;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            if ("friendId".equals(name)) {
+                friendId = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            Map<String, Object> envelope = UserService.getFriendData(friendId);
+
+            if (envelope != null) {
+                ChatService.sendToUser(userId, envelope);
+            } else {
+                System.out.println("⚠️ No friend found with id " + friendId);
+            }
+        }
+    }
+
+    public static class GetAllUsers extends Command {
+
+        private int avatarSize;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            if ("avatarSize".equals(name)) {
+                avatarSize = in.nextInt();
+            } else {
+                in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            ProfileService.setPreferredSize(userId, avatarSize);
+            Map<String, Object> envelope = UserService.getAllUsers(userId);
+            ChatService.sendToUser(userId, envelope);
+        }
+    }
+
+    public static class SaveNewContact extends Command {
+
+        private String firstName;
+        private String lastName;
+        private String countryCode;
+        private String contactNo;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            if (!"user".equals(name)) {
+                in.skipValue();
+                return;
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "firstName":
+                        firstName = in.nextString();
+                        break;
+                    case "lastName":
+                        lastName = in.nextString();
+                        break;
+                    case "countryCode":
+                        countryCode = in.nextString();
+                        break;
+                    case "contactNo":
+                        contactNo = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+
+        @Override
+        public void execute(int userId) {
+            User user = new User(firstName, lastName, countryCode, contactNo);
+            Map<String, Object> envelope = UserService.saveNewContact(userId, user);
+            ChatService.sendToUser(userId, envelope);
+            Map<String, Object> e = UserService.getAllUsers(userId);
+            ChatService.sendToUser(userId, e);
+        }
+    }
+
+    public static class SetUserProfile extends Command {
+
+        @Override
+        public void execute(int userId) {
+            Map<String, Object> envelope = UserService.getMyProfileData(userId);
+            ChatService.sendToUser(userId, envelope);
+        }
+    }
+
+    // Reconnect catch-up: everything that changed after the client's version
+    public static class Sync extends Command {
+
+        private long since;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            if ("since".equals(name)) {
+                since = in.nextLong();
+            } else {
+                in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            SyncService.sync(userId, since);
+        }
+    }
+
+    public static class DeleteMessage extends Command {
+
+        private long chatId;
+
+        @Override
+        protected void read(String name, FieldReader in) throws IOException {
+            if ("chatId".equals(name)) {
+                chatId = in.nextLong();
+            } else {
+                in.skipValue();
+            }
+        }
+
+        @Override
+        public void execute(int userId) {
+            Map<String, Object> envelope = ChatService.deleteMessage(chatId, userId);
+
+            if (envelope != null) {
+                ChatService.sendToUser(userId, envelope);
+            } else {
+                System.out.println("⚠️ Could not delete message with id " + chatId);
+            }
+        }
+    }
+}
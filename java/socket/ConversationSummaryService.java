@@ -0,0 +1,178 @@
+package socket;
+
+import entity.ChangeLog;
+import entity.Chat;
+import entity.ConversationSummary;
+import entity.Status;
+import entity.User;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.TemporalType;
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.query.Query;
+import util.HibernateUtil;
+
+public class ConversationSummaryService {
+
+    // Call inside the transaction that saved the chats: one upsert per conversation side, not per chat
+    public static void onChatsSaved(Session s, List<Chat> chats) {
+        Map<Long, Object[]> sides = new LinkedHashMap<>();
+        for (Chat chat : chats) {
+            int fromId = chat.getFrom().getId();
+            int toId = chat.getTo().getId();
+            side(sides, fromId, toId, chat, 0);
+            side(sides, toId, fromId, chat, 1);
+        }
+        for (Map.Entry<Long, Object[]> e : sides.entrySet()) {
+            Chat last = (Chat) e.getValue()[0];
+            upsert(s, (int) (e.getKey() >> 32), e.getKey().intValue(),
+                    last.getMessage(), last.getCreatedAt(), (Integer) e.getValue()[1], true);
+        }
+    }
+
+    private static void side(Map<Long, Object[]> sides, int userId, int friendId, Chat chat, int unreadDelta) {
+        Object[] v = sides.computeIfAbsent(((long) userId << 32) | (friendId & 0xFFFFFFFFL), k -> new Object[]{null, 0});
+        v[0] = chat; // batch is in submission order, the last one wins
+        v[1] = (Integer) v[1] + unreadDelta;
+    }
+
+    // Marks everything friend sent up to now as READ with one UPDATE and moves the
+    // watermark. Returns the new watermark, or 0 when nothing new was read.
+    public static long advanceReadWatermark(Session s, int userId, int friendId) {
+        long conversationId = Chat.conversationOf(userId, friendId);
+        Criteria c1 = s.createCriteria(Chat.class);
+        c1.add(Restrictions.eq("conversationId", conversationId));
+        c1.add(Restrictions.eq("from.id", friendId));
+        c1.setProjection(Projections.max("id"));
+        Number max = (Number) c1.uniqueResult();
+        if (max == null) {
+            return 0;
+        }
+        long watermark = max.longValue();
+
+        s.createQuery("UPDATE Chat c SET c.status = :read"
+                + " WHERE c.conversationId = :conversationId AND c.to.id = :userId"
+                + " AND c.status IN (:unread) AND c.id <= :watermark")
+                .setParameter("read", Status.READ)
+                .setParameterList("unread", new Status[]{Status.SENT, Status.DELIVERED})
+                .setParameter("conversationId", conversationId)
+                .setParameter("userId", userId)
+                .setParameter("watermark", watermark)
+                .executeUpdate();
+
+        int moved = s.createQuery("UPDATE ConversationSummary cs SET cs.unreadCount = 0, cs.lastReadId = :watermark"
+                + " WHERE cs.user.id = :userId AND cs.friend.id = :friendId AND cs.lastReadId < :watermark")
+                .setParameter("watermark", watermark)
+                .setParameter("userId", userId)
+                .setParameter("friendId", friendId)
+                .executeUpdate();
+        if (moved == 0) {
+            return 0;
+        }
+        SyncService.record(s, friendId, ChangeLog.Kind.READ, userId, watermark);
+        return watermark;
+    }
+
+    // Recompute both sides from the chat table (e.g. after a message was deleted)
+    public static void rebuild(Session s, int userId, int friendId) {
+        rebuildSide(s, userId, friendId);
+        rebuildSide(s, friendId, userId);
+    }
+
+    private static void rebuildSide(Session s, int userId, int friendId) {
+        long conversationId = Chat.conversationOf(userId, friendId);
+        Criteria c1 = s.createCriteria(Chat.class);
+        c1.add(Restrictions.eq("conversationId", conversationId));
+        c1.addOrder(Order.desc("id"));
+        c1.setMaxResults(1);
+        Chat last = (Chat) c1.uniqueResult();
+
+        if (last == null) {
+            s.createQuery("DELETE FROM ConversationSummary cs"
+                    + " WHERE cs.user.id = :userId AND cs.friend.id = :friendId")
+                    .setParameter("userId", userId)
+                    .setParameter("friendId", friendId)
+                    .executeUpdate();
+            return;
+        }
+
+        Criteria c2 = s.createCriteria(Chat.class);
+        c2.add(Restrictions.eq("conversationId", conversationId));
+        c2.add(Restrictions.eq("to.id", userId));
+        c2.add(Restrictions.in("status", Status.SENT, Status.DELIVERED));
+        c2.setProjection(Projections.rowCount());
+        int unread = ((Number) c2.uniqueResult()).intValue();
+
+        upsert(s, userId, friendId, last.getMessage(), last.getCreatedAt(), unread, false);
+    }
+
+    // One INSERT ... ON DUPLICATE KEY UPDATE so a concurrent rebuild or another node's
+    // writer can't hit the unique key between an UPDATE and a fallback INSERT.
+    // Adds to unread_count when relative, overwrites it otherwise.
+    private static void upsert(Session s, int userId, int friendId, String message, Date time, int unread, boolean relative) {
+        s.createNativeQuery("INSERT INTO conversation_summary"
+                + " (user_id, friend_id, last_message, last_time_stamp, unread_count)"
+                + " VALUES (:userId, :friendId, :message, :time, :unread)"
+                + " ON DUPLICATE KEY UPDATE last_message = VALUES(last_message),"
+                + " last_time_stamp = VALUES(last_time_stamp),"
+                + (relative ? " unread_count = unread_count + VALUES(unread_count)" : " unread_count = VALUES(unread_count)"))
+                .addSynchronizedEntityClass(ConversationSummary.class)
+                .setParameter("userId", userId)
+                .setParameter("friendId", friendId)
+                .setParameter("message", message)
+                .setParameter("time", time, TemporalType.TIMESTAMP)
+                .setParameter("unread", unread)
+                .executeUpdate();
+    }
+
+    public static List<ChatSummary> getSummariesForUser(int userId) {
+        return getSummariesForUser(userId, null);
+    }
+
+    // Only the given friends' rows when friendIds isn't null
+    public static List<ChatSummary> getSummariesForUser(int userId, Collection<Integer> friendIds) {
+        if (friendIds != null && friendIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        try {
+            Query<ConversationSummary> q = s.createQuery("FROM ConversationSummary cs JOIN FETCH cs.friend"
+                    + " WHERE cs.user.id = :userId"
+                    // same friends the old per-friend scan covered: ACTIVE rows only
+                    + " AND EXISTS (SELECT f.id FROM FriendList f WHERE f.userId.id = :userId"
+                    + " AND f.friendId.id = cs.friend.id AND f.status = :active)"
+                    + (friendIds == null ? "" : " AND cs.friend.id IN (:friendIds)")
+                    + " ORDER BY cs.lastTimeStamp DESC", ConversationSummary.class);
+            q.setParameter("userId", userId);
+            q.setParameter("active", Status.ACTIVE);
+            if (friendIds != null) {
+                q.setParameterList("friendIds", friendIds);
+            }
+            List<ConversationSummary> rows = q.list();
+
+            List<ChatSummary> list = new ArrayList<>(rows.size());
+            for (ConversationSummary row : rows) {
+                User friend = row.getFriend();
+                list.add(new ChatSummary(
+                        friend.getId(),
+                        friend.getFirstName() + " " + friend.getLastName(),
+                        row.getLastMessage(),
+                        row.getLastTimeStamp(),
+                        row.getUnreadCount(),
+                        ProfileService.getProfileUrl(friend.getId(), ProfileService.preferredSize(userId, ProfileService.SMALL))
+                ));
+            }
+            return list;
+        } finally {
+            s.close();
+        }
+    }
+}
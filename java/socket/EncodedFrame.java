@@ -0,0 +1,56 @@
+package socket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * An envelope serialised once. The same instance is handed to every
+ * recipient's OutboundQueue and to the logger, so a broadcast costs one
+ * Gson pass no matter how many sessions receive it. The BinaryProtocol form
+ * is built on first use, once, for all binary sessions.
+ */
+public class EncodedFrame {
+
+    private final String type;
+    private final String text;
+    private final Supplier<byte[]> binaryEncoder;
+    private volatile byte[] utf8;
+    private volatile byte[] binary;
+
+    public EncodedFrame(String type, String text, Supplier<byte[]> binaryEncoder) {
+        this.type = type;
+        this.text = text;
+        this.binaryEncoder = binaryEncoder;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    // Encoded lazily, only needed for size accounting and binary writes
+    public byte[] getUtf8() {
+        byte[] bytes = utf8;
+        if (bytes == null) {
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+            utf8 = bytes;
+        }
+        return bytes;
+    }
+
+    public int byteLength() {
+        return getUtf8().length;
+    }
+
+    public byte[] getBinary() {
+        byte[] bytes = binary;
+        if (bytes == null) {
+            bytes = binaryEncoder.get();
+            binary = bytes;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,26 @@
+package socket;
+
+import java.io.IOException;
+
+/**
+ * What a Command needs to read its fields, so the same commands decode from
+ * JSON text frames and from binary frames.
+ */
+public interface FieldReader {
+
+    void beginObject() throws IOException;
+
+    void endObject() throws IOException;
+
+    boolean hasNext() throws IOException;
+
+    String nextName() throws IOException;
+
+    String nextString() throws IOException;
+
+    int nextInt() throws IOException;
+
+    long nextLong() throws IOException;
+
+    void skipValue() throws IOException;
+}
@@ -0,0 +1,81 @@
+package socket;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Registry of client frame types. decode() looks at "type" first, so an
+ * unknown frame is dropped before the rest of it is parsed.
+ */
+public class FrameDecoder {
+
+    private static final Map<String, Supplier<? extends Command>> REGISTRY = new HashMap<>();
+
+    static {
+        register("PING", Commands.Ping::new);
+        register("send_chat", Commands.SendChat::new);
+        register("get_chat_list", Commands.GetChatList::new);
+        register("get_single_chat", Commands.GetSingleChat::new);
+        register("send_message", Commands.SendMessage::new);
+        register("get_friend_data", Commands.GetFriendData::new);
+        register("get_all_users", Commands.GetAllUsers::new);
+        register("save_new_contact", Commands.SaveNewContact::new);
+        register("set_user_profile", Commands.SetUserProfile::new);
+        register("delete_message", Commands.DeleteMessage::new);
+        register("sync", Commands.Sync::new);
+    }
+
+    // Only call during class init, the map is not synchronized
+    private static void register(String type, Supplier<? extends Command> factory) {
+        REGISTRY.put(type, factory);
+    }
+
+    // Returns null for frames we don't handle
+    public static Command decode(String message) throws IOException {
+        return decode(new JsonFieldReader(new JsonReader(new StringReader(message))),
+                new JsonFieldReader(new JsonReader(new StringReader(message))));
+    }
+
+    public static Command decode(ByteBuffer message) throws IOException {
+        return decode(new BinaryFrameReader(message.duplicate()), new BinaryFrameReader(message));
+    }
+
+    private static Command decode(FieldReader peek, FieldReader in) throws IOException {
+        String type = peekType(peek);
+        Supplier<? extends Command> factory = type == null ? null : REGISTRY.get(type);
+        if (factory == null) {
+            System.out.println("Ignored unknown client type: " + type);
+            return null;
+        }
+
+        Command command = factory.get();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("type".equals(name)) {
+                in.skipValue();
+            } else {
+                command.read(name, in);
+            }
+        }
+        in.endObject();
+        return command;
+    }
+
+    // Clients put "type" first, so this normally reads a single key
+    private static String peekType(FieldReader in) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("type".equals(in.nextName())) {
+                return in.nextString();
+            }
+            in.skipValue();
+        }
+        return null;
+    }
+}
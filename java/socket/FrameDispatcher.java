@@ -0,0 +1,112 @@
+package socket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs decoded frames off the WebSocket I/O thread. Each user gets a serial
+ * queue so their frames keep their arrival order, while different users run in
+ * parallel on the shared executor (virtual threads when the JDK has them).
+ */
+public class FrameDispatcher {
+
+    // -Dchatify.dispatch.maxQueueDepth=... pending frames allowed per user
+    private static final int MAX_QUEUE_DEPTH = Integer.getInteger("chatify.dispatch.maxQueueDepth", 256);
+
+    private static final ExecutorService EXECUTOR = newExecutor();
+    private static final ConcurrentHashMap<Integer, UserQueue> QUEUES = new ConcurrentHashMap<>();
+
+    public static boolean dispatch(int userId, Runnable task) {
+        boolean[] accepted = new boolean[1];
+        // offered under the map's lock for this user, so release() can't drop the queue in between
+        // and leave a second queue draining next to it
+        QUEUES.compute(userId, (id, queue) -> {
+            UserQueue q = queue == null ? new UserQueue(id) : queue;
+            accepted[0] = q.offer(task);
+            return q;
+        });
+        if (!accepted[0]) {
+            System.out.println("⚠️ Frame queue full for user " + userId + ", dropping frame");
+            return false;
+        }
+        return true;
+    }
+
+    // Call @OnClose, only drops the queue once it has drained
+    public static void release(int userId) {
+        QUEUES.computeIfPresent(userId, (id, queue) -> queue.isIdle() ? null : queue);
+    }
+
+    public static int queueDepth(int userId) {
+        UserQueue queue = QUEUES.get(userId);
+        return queue == null ? 0 : queue.depth.get();
+    }
+
+    private static ExecutorService newExecutor() {
+        try {
+            // Java 21+: one cheap virtual thread per drain
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "chatify-dispatch");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private static class UserQueue implements Runnable {
+
+        private final int userId;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        UserQueue(int userId) {
+            this.userId = userId;
+        }
+
+        boolean offer(Runnable task) {
+            if (depth.incrementAndGet() > MAX_QUEUE_DEPTH) {
+                depth.decrementAndGet();
+                return false;
+            }
+            tasks.add(task);
+            schedule();
+            return true;
+        }
+
+        boolean isIdle() {
+            return depth.get() == 0 && !scheduled.get();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                EXECUTOR.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                depth.decrementAndGet();
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    System.out.println("⚠️ Frame failed for user " + userId);
+                    e.printStackTrace();
+                }
+            }
+            scheduled.set(false);
+            // a frame may have been queued after the last poll
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package socket;
+
+import entity.Status;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.hibernate.Session;
+import util.HibernateUtil;
+
+/**
+ * Active friend_list edges in memory as sorted int arrays: for every user
+ * the friends in their list, and the watchers that have them in theirs.
+ * No entities and no boxed ids, so presence fan-out and "is this pair
+ * already friends" are answered without a query. Loaded at startup and
+ * kept current by the paths that add friend_list rows; before load()
+ * finishes callers fall back to the DB. Rows added through another node are
+ * picked up by the periodic reload.
+ *
+ * Arrays handed out are never written again, an edge added later
+ * replaces the array.
+ */
+public class FriendGraph {
+
+    // -Dchatify.friendGraph.reloadMs=... full reload interval, 0 for none
+    private static final long RELOAD_MS = Long.getLong("chatify.friendGraph.reloadMs", TimeUnit.MINUTES.toMillis(10));
+
+    private static final int[] NONE = new int[0];
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "chatify-friend-graph");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static IntMap friends = new IntMap(); // userId -> friendIds
+    private static IntMap watchers = new IntMap(); // friendId -> userIds
+    private static volatile boolean loaded;
+    // edges added while a load reads the table, replayed onto its result
+    private static IntBuffer journal;
+
+    // Call at startup
+    public static void start() {
+        load();
+        if (RELOAD_MS > 0) {
+            SCHEDULER.scheduleWithFixedDelay(FriendGraph::load, RELOAD_MS, RELOAD_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Call on shutdown
+    public static void shutdown() {
+        SCHEDULER.shutdownNow();
+    }
+
+    // Reads the table without blocking lookups, then swaps the result in
+    private static void load() {
+        LOCK.writeLock().lock();
+        try {
+            journal = new IntBuffer();
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+        try {
+            IntBuffer users = new IntBuffer();
+            IntBuffer friendIds = new IntBuffer();
+            Session s = HibernateUtil.getSessionFactory().openSession();
+            try {
+                s.doWork(connection -> {
+                    try (PreparedStatement ps = connection.prepareStatement(
+                            "SELECT user_id, friend_id FROM friend_list WHERE user_status = ?")) {
+                        ps.setString(1, Status.ACTIVE.name());
+                        ps.setFetchSize(Integer.MIN_VALUE); // MySQL: stream the rows
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                users.add(rs.getInt(1));
+                                friendIds.add(rs.getInt(2));
+                            }
+                        }
+                    }
+                });
+            } finally {
+                s.close();
+            }
+            IntMap newFriends = group(users, friendIds);
+            IntMap newWatchers = group(friendIds, users);
+            LOCK.writeLock().lock();
+            try {
+                for (int i = 0; i < journal.size; i += 2) {
+                    link(newFriends, newWatchers, journal.data[i], journal.data[i + 1]);
+                }
+                friends = newFriends;
+                watchers = newWatchers;
+                loaded = true;
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+            System.out.println("Friend graph loaded with " + users.size + " edges");
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Friend graph not loaded, friend lookups use the DB");
+            e.printStackTrace();
+        } finally {
+            LOCK.writeLock().lock();
+            try {
+                journal = null;
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+        }
+    }
+
+    public static boolean isLoaded() {
+        return loaded;
+    }
+
+    // After a friend_list row (userId -> friendId, ACTIVE) is committed, or found by a DB lookup
+    public static void add(int userId, int friendId) {
+        LOCK.writeLock().lock();
+        try {
+            link(friends, watchers, userId, friendId);
+            if (journal != null) {
+                journal.add(userId);
+                journal.add(friendId);
+            }
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    private static void link(IntMap friends, IntMap watchers, int userId, int friendId) {
+        friends.put(userId, insert(friends.get(userId), friendId));
+        watchers.put(friendId, insert(watchers.get(friendId), userId));
+    }
+
+    // Sorted, do not modify
+    public static int[] friendsOf(int userId) {
+        LOCK.readLock().lock();
+        try {
+            return friends.get(userId);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    // Users that have userId in their list, the ones to tell about userId's presence. Sorted, do not modify.
+    public static int[] watchersOf(int userId) {
+        LOCK.readLock().lock();
+        try {
+            return watchers.get(userId);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    public static boolean isFriend(int userId, int friendId) {
+        return Arrays.binarySearch(friendsOf(userId), friendId) >= 0;
+    }
+
+    // Friends of userId with a session on any node
+    public static int[] onlineFriends(int userId) {
+        int[] all = friendsOf(userId);
+        int[] online = new int[all.length];
+        int n = 0;
+        for (int friendId : all) {
+            if (ChatService.isConnected(friendId)) {
+                online[n++] = friendId;
+            }
+        }
+        return Arrays.copyOf(online, n);
+    }
+
+    private static int[] insert(int[] ids, int id) {
+        int i = Arrays.binarySearch(ids, id);
+        if (i >= 0) {
+            return ids;
+        }
+        i = -i - 1;
+        int[] next = new int[ids.length + 1];
+        System.arraycopy(ids, 0, next, 0, i);
+        next[i] = id;
+        System.arraycopy(ids, i, next, i + 1, ids.length - i);
+        return next;
+    }
+
+    // Count the edges per key, then fill one exactly sized array per key and sort it
+    private static IntMap group(IntBuffer keys, IntBuffer values) {
+        IntMap counts = new IntMap();
+        for (int i = 0; i < keys.size; i++) {
+            int[] c = counts.get(keys.data[i]);
+            if (c == NONE) {
+                counts.put(keys.data[i], new int[]{1});
+            } else {
+                c[0]++;
+            }
+        }
+        IntMap map = new IntMap();
+        for (int i = 0; i < keys.size; i++) {
+            int key = keys.data[i];
+            int[] list = map.get(key);
+            int[] c = counts.get(key);
+            if (list == NONE) {
+                list = new int[c[0]];
+                map.put(key, list);
+                c[0] = 0; // reused as the fill position
+            }
+            list[c[0]++] = values.data[i];
+        }
+        for (int i = 0; i < map.keys.length; i++) {
+            if (map.keys[i] != 0) {
+                Arrays.sort(map.values[i]);
+            }
+        }
+        return map;
+    }
+
+    private static class IntBuffer {
+
+        private int[] data = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+    }
+
+    // Open addressing int -> int[], user ids start at 1 so 0 marks a free slot
+    private static class IntMap {
+
+        private int[] keys = new int[64];
+        private int[][] values = new int[64][];
+        private int size;
+
+        int[] get(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return NONE;
+        }
+
+        void put(int key, int[] value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[][] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2][];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package socket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.websocket.Session;
+import util.SnowflakeIdGenerator;
+
+/**
+ * Home chat list updates as deltas. Write paths call changed(user, friend);
+ * changes for the same user within the coalescing window go out as one
+ * friend_list_delta with only the touched ChatSummary rows. Every delta
+ * carries the version it applies on top of, so a client that missed one
+ * asks for a snapshot (get_chat_list with its version) instead of drifting.
+ *
+ * Deltas only go to sessions that asked for them by sending a "version" with
+ * get_chat_list (OutboundQueue keeps that per session, so one device can't
+ * switch the others); older clients get a full friend_list per window
+ * instead, sent as LEGACY_TYPE so only they receive it. The timer only hands
+ * the work to the user's FrameDispatcher queue, the queries run there.
+ */
+public class FriendListService {
+
+    public static final String DELTA_TYPE = "friend_list_delta";
+    // frame type (the envelope says friend_list) of the full list sent in place of a delta
+    public static final String LEGACY_TYPE = "friend_list_legacy";
+
+    // -Dchatify.friendList.coalesceMs=... changes within this window share one delta
+    private static final long COALESCE_MS = Long.getLong("chatify.friendList.coalesceMs", 200L);
+
+    private static final ConcurrentHashMap<Integer, ListState> STATES = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "chatify-friend-list");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // userId's row for friendId changed (new message, read, delete, ...)
+    public static void changed(int userId, int friendId) {
+        if (!ChatService.isConnected(userId)) {
+            return; // gets a snapshot on the next get_chat_list
+        }
+        ListState state = STATES.computeIfAbsent(userId, id -> new ListState());
+        synchronized (state) {
+            state.pending.add(friendId);
+            if (!state.scheduled) {
+                state.scheduled = true;
+                schedule(userId);
+            }
+        }
+    }
+
+    private static void schedule(int userId) {
+        SCHEDULER.schedule(() -> {
+            if (!FrameDispatcher.dispatch(userId, () -> flush(userId))) {
+                schedule(userId); // queue full, try again after another window
+            }
+        }, COALESCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // get_chat_list: a snapshot, unless the client already has the current version.
+    // deltas is true when the client sent a version at all, i.e. that session understands friend_list_delta.
+    public static void sendList(int userId, Session session, boolean deltas, long clientVersion) {
+        if (session != null) {
+            ChatService.setListDeltas(userId, session, deltas);
+        }
+        ListState state = STATES.computeIfAbsent(userId, id -> new ListState());
+        synchronized (state) {
+            if (deltas && clientVersion != 0 && clientVersion == state.version && state.pending.isEmpty()) {
+                ChatService.sendToUser(userId, deltaEnvelope(state.version, state.version, new ArrayList<>(), new ArrayList<>()));
+                return;
+            }
+            state.pending.clear();
+            sendSnapshot(userId, state);
+        }
+    }
+
+    // Caller holds the state lock, so no delta can be based on an older version afterwards
+    private static void sendSnapshot(int userId, ListState state) {
+        List<ChatSummary> list = ChatService.getFriendChatsForUser(userId);
+        state.version = SnowflakeIdGenerator.next();
+        Map<String, Object> envelope = ChatService.friendListEnvelope(list);
+        envelope.put("version", state.version);
+        ChatService.sendToUser(userId, envelope);
+    }
+
+    // Call @OnClose of the last session, the next connect starts from a snapshot
+    public static void release(int userId) {
+        STATES.remove(userId);
+    }
+
+    private static void flush(int userId) {
+        try {
+            ListState state = STATES.get(userId);
+            if (state == null) {
+                return;
+            }
+            synchronized (state) {
+                state.scheduled = false;
+                if (state.pending.isEmpty()) {
+                    return;
+                }
+                Set<Integer> friends = new HashSet<>(state.pending);
+                state.pending.clear();
+
+                List<ChatSummary> upserts = ConversationSummaryService.getSummariesForUser(userId, friends);
+                List<Integer> removes = new ArrayList<>(friends);
+                for (ChatSummary summary : upserts) {
+                    removes.remove((Integer) summary.getFriendId());
+                }
+                long base = state.version;
+                state.version = SnowflakeIdGenerator.next();
+                ChatService.sendToUser(userId, deltaEnvelope(base, state.version, upserts, removes));
+                if (ChatService.hasLegacyListSession(userId)) {
+                    // those clients only know friend_list; it carries no version, they don't track one
+                    ChatService.sendToUser(userId, ChatService.encode(LEGACY_TYPE,
+                            ChatService.friendListEnvelope(ChatService.getFriendChatsForUser(userId))));
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Chat list update failed for user " + userId);
+            e.printStackTrace();
+        }
+    }
+
+    private static Map<String, Object> deltaEnvelope(long baseVersion, long version, List<ChatSummary> upserts, List<Integer> removes) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("baseVersion", baseVersion);
+        payload.put("version", version);
+        payload.put("upserts", upserts);
+        payload.put("removes", removes);
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", DELTA_TYPE);
+        envelope.put("payload", payload);
+        return envelope;
+    }
+
+    private static class ListState {
+
+        private final Set<Integer> pending = new HashSet<>();
+        private boolean scheduled;
+        private long version; // 0 until the first snapshot
+    }
+}
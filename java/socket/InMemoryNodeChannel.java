@@ -0,0 +1,52 @@
+package socket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nodes living in the same JVM. The default channel: with a single node it
+ * never has anyone to talk to, and tests can start several routers side by
+ * side.
+ */
+public class InMemoryNodeChannel implements NodeChannel {
+
+    private static final Map<String, Listener> NODES = new ConcurrentHashMap<>();
+
+    private String nodeId;
+
+    @Override
+    public void start(String nodeId, Listener listener) {
+        this.nodeId = nodeId;
+        for (Map.Entry<String, Listener> node : NODES.entrySet()) {
+            for (int userId : node.getValue().localUsers()) {
+                listener.onPresence(node.getKey(), userId, true);
+            }
+        }
+        NODES.put(nodeId, listener);
+    }
+
+    @Override
+    public void deliver(String nodeId, int userId, String type, String text) {
+        Listener node = NODES.get(nodeId);
+        if (node != null) {
+            node.onDeliver(userId, type, text);
+        }
+    }
+
+    @Override
+    public void announce(int userId, boolean online) {
+        for (Map.Entry<String, Listener> node : NODES.entrySet()) {
+            if (!node.getKey().equals(nodeId)) {
+                node.getValue().onPresence(nodeId, userId, online);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        NODES.remove(nodeId);
+        for (Listener node : NODES.values()) {
+            node.onNodeLost(nodeId);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package socket;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+
+public class JsonFieldReader implements FieldReader {
+
+    private final JsonReader in;
+
+    public JsonFieldReader(JsonReader in) {
+        this.in = in;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        in.beginObject();
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        in.endObject();
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        return in.hasNext();
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        return in.nextName();
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        return in.nextString();
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        return in.nextInt();
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        return in.nextLong();
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        in.skipValue();
+    }
+}
@@ -0,0 +1,106 @@
+package socket;
+
+import java.util.List;
+import java.util.UUID;
+import util.SnowflakeIdGenerator;
+
+/**
+ * Routes frames to users connected to other nodes. Each node registers its
+ * own users in the PresenceDirectory and announces them to its peers;
+ * sendToUser forwards a frame to every other node that holds a session for
+ * the recipient.
+ *
+ * -Dchatify.node.id=...            this node's id (random by default)
+ * -Dchatify.router=memory|tcp      in-JVM channel (default) or TcpNodeChannel
+ *                                  (tcp needs -Dchatify.id.node, see SnowflakeIdGenerator)
+ */
+public class MessageRouter implements NodeChannel.Listener {
+
+    private final String nodeId;
+    private final NodeChannel channel;
+    private final PresenceDirectory directory = new PresenceDirectory();
+
+    public MessageRouter(String nodeId, NodeChannel channel) {
+        this.nodeId = nodeId;
+        this.channel = channel;
+    }
+
+    public static MessageRouter fromConfig() {
+        String nodeId = System.getProperty("chatify.node.id", UUID.randomUUID().toString().substring(0, 8));
+        NodeChannel channel;
+        if ("tcp".equals(System.getProperty("chatify.router", "memory"))) {
+            SnowflakeIdGenerator.requireConfiguredNode(); // chat and change_log ids must not collide
+            channel = new TcpNodeChannel(System.getProperty("chatify.router.bind", "127.0.0.1"),
+                    Integer.getInteger("chatify.router.port", 7070),
+                    TcpNodeChannel.parsePeers(System.getProperty("chatify.router.peers", "")));
+        } else {
+            channel = new InMemoryNodeChannel();
+        }
+        return new MessageRouter(nodeId, channel);
+    }
+
+    public void start() {
+        channel.start(nodeId, this);
+    }
+
+    public void stop() {
+        channel.close();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    // First session of the user on this node
+    public void userOnline(int userId) {
+        directory.add(userId, nodeId);
+        channel.announce(userId, true);
+    }
+
+    // Last session of the user on this node closed
+    public void userOffline(int userId) {
+        directory.remove(userId, nodeId);
+        channel.announce(userId, false);
+    }
+
+    public boolean isRemote(int userId) {
+        for (String node : directory.nodesOf(userId)) {
+            if (!node.equals(nodeId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void forward(int userId, EncodedFrame frame) {
+        for (String node : directory.nodesOf(userId)) {
+            if (!node.equals(nodeId)) {
+                channel.deliver(node, userId, frame.getType(), frame.getText());
+            }
+        }
+    }
+
+    @Override
+    public void onDeliver(int userId, String type, String text) {
+        ChatService.deliverLocal(userId, ChatService.remoteFrame(type, text));
+    }
+
+    @Override
+    public void onPresence(String node, int userId, boolean online) {
+        if (online) {
+            directory.add(userId, node);
+        } else {
+            directory.remove(userId, node);
+        }
+    }
+
+    @Override
+    public void onNodeLost(String node) {
+        directory.removeNode(node);
+    }
+
+    @Override
+    public List<Integer> localUsers() {
+        return directory.usersOn(nodeId);
+    }
+}
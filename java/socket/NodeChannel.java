@@ -0,0 +1,30 @@
+package socket;
+
+import java.util.List;
+
+/**
+ * Node-to-node transport for MessageRouter.
+ */
+public interface NodeChannel {
+
+    interface Listener {
+
+        void onDeliver(int userId, String type, String text);
+
+        void onPresence(String nodeId, int userId, boolean online);
+
+        void onNodeLost(String nodeId);
+
+        // Users with a session on this node, sent to peers that (re)connect
+        List<Integer> localUsers();
+    }
+
+    void start(String nodeId, Listener listener);
+
+    // Must not block the caller
+    void deliver(String nodeId, int userId, String type, String text);
+
+    void announce(int userId, boolean online);
+
+    void close();
+}
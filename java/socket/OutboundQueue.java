@@ -0,0 +1,191 @@
+package socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+/**
+ * Bounded outbound queue for one WebSocket session. Frames are written
+ * through getAsyncRemote() one at a time, so callers never block on a slow
+ * client. Snapshot frames (friend_list, all_users, ...) replace an older
+ * queued frame of the same type instead of piling up behind it.
+ *
+ * Only snapshot frames are ever dropped: chat frames are not, a client
+ * that falls too far behind on those is disconnected and resyncs.
+ */
+public class OutboundQueue {
+
+    public enum Policy {
+        DROP_OLDEST, // discard the oldest queued snapshot frames, disconnect if that isn't enough
+        COLLAPSE, // keep only the newest queued snapshot of each type, disconnect if that isn't enough
+        DISCONNECT // close the session, the client reconnects and resyncs
+    }
+
+    // -Dchatify.outbound.highWater=... frames queued before the policy kicks in
+    private static final int HIGH_WATER = Integer.getInteger("chatify.outbound.highWater", 64);
+    // -Dchatify.outbound.graceMs=... how long a session may stay above the mark
+    private static final long GRACE_MS = Long.getLong("chatify.outbound.graceMs", 2000L);
+    // -Dchatify.outbound.policy=DROP_OLDEST|COLLAPSE|DISCONNECT
+    private static final Policy POLICY = Policy.valueOf(System.getProperty("chatify.outbound.policy", "DISCONNECT"));
+    // past this the policy applies immediately, no grace period
+    private static final int HARD_LIMIT = HIGH_WATER * 4;
+    // full snapshots, only the newest one queued is worth sending
+    private static final Set<String> SNAPSHOT_TYPES = new HashSet<>(Arrays.asList(
+            "friend_list", FriendListService.LEGACY_TYPE, "all_users", "user_profile", "PONG"));
+
+    private final Session session;
+    private final boolean binary;
+    private final ArrayDeque<EncodedFrame> pending = new ArrayDeque<>();
+    private boolean inFlight;
+    private long overSince;
+    private volatile boolean listDeltas; // the client sent a version with get_chat_list
+
+    public OutboundQueue(Session session) {
+        this.session = session;
+        this.binary = BinaryProtocol.SUBPROTOCOL.equals(session.getNegotiatedSubprotocol());
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public boolean isOpen() {
+        return session.isOpen();
+    }
+
+    public void setListDeltas(boolean listDeltas) {
+        this.listDeltas = listDeltas;
+    }
+
+    public boolean wantsListDeltas() {
+        return listDeltas;
+    }
+
+    // friend_list_delta only for clients that asked for it, the full list standing in for it only for the others
+    public boolean accepts(EncodedFrame frame) {
+        return listDeltas ? !FriendListService.LEGACY_TYPE.equals(frame.getType())
+                : !FriendListService.DELTA_TYPE.equals(frame.getType());
+    }
+
+    public void enqueue(EncodedFrame frame) {
+        boolean disconnect = false;
+        synchronized (this) {
+            if (SNAPSHOT_TYPES.contains(frame.getType())) {
+                removeType(frame.getType());
+            }
+            pending.addLast(frame);
+
+            if (pending.size() <= HIGH_WATER) {
+                overSince = 0;
+            } else {
+                long now = System.currentTimeMillis();
+                if (overSince == 0) {
+                    overSince = now;
+                }
+                if (pending.size() > HARD_LIMIT || now - overSince > GRACE_MS) {
+                    disconnect = applyPolicy();
+                }
+            }
+        }
+        if (disconnect) {
+            close();
+        } else {
+            drain();
+        }
+    }
+
+    private void drain() {
+        EncodedFrame next;
+        synchronized (this) {
+            if (inFlight || pending.isEmpty() || !session.isOpen()) {
+                return;
+            }
+            next = pending.pollFirst();
+            inFlight = true;
+        }
+        try {
+            if (binary) {
+                session.getAsyncRemote().sendBinary(ByteBuffer.wrap(next.getBinary()), this::onSent);
+            } else {
+                session.getAsyncRemote().sendText(next.getText(), this::onSent);
+            }
+        } catch (IllegalStateException e) {
+            // session closed underneath us
+            synchronized (this) {
+                inFlight = false;
+                pending.clear();
+            }
+        }
+    }
+
+    private void onSent(SendResult result) {
+        if (!result.isOK()) {
+            result.getException().printStackTrace();
+        }
+        synchronized (this) {
+            inFlight = false;
+        }
+        drain();
+    }
+
+    // Caller holds the lock. Returns true when the session should be closed.
+    private boolean applyPolicy() {
+        System.out.println("⚠️ Slow consumer " + session.getId() + ": " + pending.size() + " frames queued, " + POLICY);
+        switch (POLICY) {
+            case DROP_OLDEST: {
+                Iterator<EncodedFrame> it = pending.iterator();
+                while (pending.size() > HIGH_WATER && it.hasNext()) {
+                    if (SNAPSHOT_TYPES.contains(it.next().getType())) {
+                        it.remove();
+                    }
+                }
+                break;
+            }
+            case COLLAPSE: {
+                Set<String> seen = new HashSet<>();
+                Iterator<EncodedFrame> it = pending.descendingIterator();
+                while (it.hasNext()) {
+                    String type = it.next().getType();
+                    if (SNAPSHOT_TYPES.contains(type) && !seen.add(type)) {
+                        it.remove();
+                    }
+                }
+                break;
+            }
+            case DISCONNECT:
+                break;
+        }
+        if (pending.size() > HIGH_WATER) {
+            // what's left are chat frames, dropping any would lose messages silently
+            pending.clear();
+            return true;
+        }
+        overSince = 0;
+        return false;
+    }
+
+    private void removeType(String type) {
+        Iterator<EncodedFrame> it = pending.iterator();
+        while (it.hasNext()) {
+            if (type.equals(it.next().getType())) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private void close() {
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Slow consumer"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
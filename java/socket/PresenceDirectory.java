@@ -0,0 +1,82 @@
+package socket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which nodes currently hold a WebSocket session for a user. Every node keeps
+ * its own replica, fed by its own sessions and by its peers' announcements.
+ */
+public class PresenceDirectory {
+
+    private static final String[] NONE = new String[0];
+
+    // Arrays are replaced, never mutated, so lookups don't lock or allocate
+    private final ConcurrentHashMap<Integer, String[]> nodes = new ConcurrentHashMap<>();
+
+    public void add(int userId, String nodeId) {
+        nodes.compute(userId, (id, current) -> {
+            if (current == null) {
+                return new String[]{nodeId};
+            }
+            for (String node : current) {
+                if (node.equals(nodeId)) {
+                    return current;
+                }
+            }
+            String[] copy = new String[current.length + 1];
+            System.arraycopy(current, 0, copy, 0, current.length);
+            copy[current.length] = nodeId;
+            return copy;
+        });
+    }
+
+    public void remove(int userId, String nodeId) {
+        nodes.computeIfPresent(userId, (id, current) -> without(current, nodeId));
+    }
+
+    // A peer went away, forget everything it announced
+    public void removeNode(String nodeId) {
+        for (Integer userId : nodes.keySet()) {
+            nodes.computeIfPresent(userId, (id, current) -> without(current, nodeId));
+        }
+    }
+
+    public String[] nodesOf(int userId) {
+        String[] current = nodes.get(userId);
+        return current == null ? NONE : current;
+    }
+
+    public List<Integer> usersOn(String nodeId) {
+        List<Integer> users = new ArrayList<>();
+        for (Map.Entry<Integer, String[]> entry : nodes.entrySet()) {
+            for (String node : entry.getValue()) {
+                if (node.equals(nodeId)) {
+                    users.add(entry.getKey());
+                }
+            }
+        }
+        return users;
+    }
+
+    private static String[] without(String[] current, String nodeId) {
+        int n = 0;
+        String[] copy = new String[current.length];
+        for (String node : current) {
+            if (!node.equals(nodeId)) {
+                copy[n++] = node;
+            }
+        }
+        if (n == current.length) {
+            return current;
+        }
+        if (n == 0) {
+            return null;
+        }
+        String[] trimmed = new String[n];
+        System.arraycopy(copy, 0, trimmed, 0, n);
+        return trimmed;
+    }
+}
@@ -0,0 +1,249 @@
+package socket;
+
+import entity.Status;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import util.HibernateUtil;
+
+/**
+ * Online/offline and last-seen state kept in memory. Changes are written to
+ * user.status in one JDBC batch every flush interval, and pushed to online
+ * friends as a "presence" event after a short debounce, so a flapping
+ * connection costs neither a row update nor a fan-out per reconnect.
+ */
+public class PresenceService {
+
+    // -Dchatify.presence.flushMs=... how often dirty rows are written
+    private static final long FLUSH_MS = Long.getLong("chatify.presence.flushMs", 5000L);
+    // -Dchatify.presence.debounceMs=... a change must hold this long before friends hear about it
+    private static final long DEBOUNCE_MS = Long.getLong("chatify.presence.debounceMs", 1500L);
+
+    private static final ConcurrentHashMap<Integer, Presence> PRESENCE = new ConcurrentHashMap<>();
+    private static final Set<Integer> DIRTY = ConcurrentHashMap.newKeySet();
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "chatify-presence");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        SCHEDULER.scheduleWithFixedDelay(PresenceService::flushSafely, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static void online(int userId) {
+        change(userId, Status.ONLINE);
+    }
+
+    public static void offline(int userId) {
+        if (ChatService.isConnected(userId)) {
+            return; // still connected on another node
+        }
+        change(userId, Status.OFFLINE);
+    }
+
+    public static boolean isOnline(int userId) {
+        Presence p = PRESENCE.get(userId);
+        return p != null && p.status == Status.ONLINE;
+    }
+
+    // null when the user hasn't connected since startup, fall back to the DB row then
+    public static Status getStatus(int userId) {
+        Presence p = PRESENCE.get(userId);
+        return p == null ? null : p.status;
+    }
+
+    public static Date getLastSeen(int userId) {
+        Presence p = PRESENCE.get(userId);
+        return p == null ? null : new Date(p.lastSeen);
+    }
+
+    private static void change(int userId, Status status) {
+        while (true) {
+            Presence p = PRESENCE.computeIfAbsent(userId, id -> new Presence());
+            synchronized (p) {
+                if (p.removed) {
+                    continue; // evicted by flush after we looked it up, take the new entry
+                }
+                p.status = status;
+                p.lastSeen = System.currentTimeMillis();
+                if (p.pending == null) {
+                    p.pending = SCHEDULER.schedule(() -> notifyFriends(userId), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                }
+                DIRTY.add(userId); // inside the lock, so evict() never sees an unflushed change as clean
+            }
+            return;
+        }
+    }
+
+    private static void notifyFriends(int userId) {
+        Presence p = PRESENCE.get(userId);
+        if (p == null) {
+            return;
+        }
+        Status status;
+        Date lastSeen;
+        synchronized (p) {
+            p.pending = null;
+            if (p.status == Status.OFFLINE) {
+                DIRTY.add(userId); // a flush that ran while this was pending kept the entry, the next one evicts it
+            }
+            if (p.status == p.pushed) {
+                return; // flapped back within the window
+            }
+            p.pushed = p.status;
+            status = p.status;
+            lastSeen = new Date(p.lastSeen);
+        }
+        try {
+            EncodedFrame frame = null;
+            for (int friendId : watchers(userId)) {
+                if (ChatService.isConnected(friendId)) {
+                    if (frame == null) {
+                        frame = ChatService.encode(envelope(userId, status, lastSeen));
+                    }
+                    ChatService.sendToUser(friendId, frame);
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Call @OnOpen through FrameDispatcher: one presence event per friend that is online
+    // right now, later changes arrive through notifyFriends. Before the friend graph has
+    // loaded there is nothing to send, the friend list still carries the stored status.
+    public static void sendOnlineFriends(int userId) {
+        for (int friendId : FriendGraph.onlineFriends(userId)) {
+            Date lastSeen = getLastSeen(friendId); // null when the friend is on another node
+            ChatService.sendToUser(userId, envelope(friendId, Status.ONLINE, lastSeen));
+        }
+    }
+
+    private static Map<String, Object> envelope(int userId, Status status, Date lastSeen) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("userId", userId);
+        payload.put("status", status);
+        payload.put("lastSeen", lastSeen);
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "presence");
+        envelope.put("payload", payload);
+        return envelope;
+    }
+
+    // Users that have this user in their friend list
+    private static int[] watchers(int userId) {
+        if (FriendGraph.isLoaded()) {
+            return FriendGraph.watchersOf(userId);
+        }
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        try {
+            List<Integer> ids = s.createQuery("SELECT f.userId.id FROM FriendList f WHERE f.friendId.id = :userId AND f.status = :status", Integer.class)
+                    .setParameter("userId", userId)
+                    .setParameter("status", Status.ACTIVE)
+                    .setCacheable(true)
+                    .setCacheRegion(HibernateUtil.FRIEND_LIST_QUERIES)
+                    .list();
+            int[] watchers = new int[ids.size()];
+            for (int i = 0; i < watchers.length; i++) {
+                watchers[i] = ids.get(i);
+            }
+            return watchers;
+        } finally {
+            s.close();
+        }
+    }
+
+    private static void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Writes every changed user in one transaction and one JDBC batch
+    public static void flush() {
+        if (DIRTY.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(DIRTY);
+        DIRTY.removeAll(ids);
+
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        Transaction tr = s.beginTransaction();
+        try {
+            s.doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "UPDATE user SET status = ?, updated_at = ? WHERE id = ?")) {
+                    for (int id : ids) {
+                        Presence p = PRESENCE.get(id);
+                        if (p == null) {
+                            continue;
+                        }
+                        synchronized (p) {
+                            ps.setString(1, p.status.name());
+                            ps.setTimestamp(2, new Timestamp(p.lastSeen));
+                        }
+                        ps.setInt(3, id);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+            tr.commit();
+            for (int id : ids) {
+                HibernateUtil.evictUser(id); // written past the session, the cached row has the old status
+                evict(id);
+            }
+        } catch (RuntimeException e) {
+            tr.rollback();
+            DIRTY.addAll(ids); // retry on the next tick
+            throw e;
+        } finally {
+            s.close();
+        }
+    }
+
+    // Offline, written and pushed: the row says the same now, so drop the entry and let
+    // getStatus fall back to it. A change racing with this retries on a fresh entry.
+    private static void evict(int userId) {
+        PRESENCE.computeIfPresent(userId, (id, p) -> {
+            synchronized (p) {
+                if (p.status != Status.OFFLINE || p.pending != null || DIRTY.contains(id)
+                        || ChatService.isConnected(id)) {
+                    return p;
+                }
+                p.removed = true;
+                return null;
+            }
+        });
+    }
+
+    // Call on shutdown so the last changes are not lost
+    public static void shutdown() {
+        SCHEDULER.shutdownNow();
+        flushSafely();
+    }
+
+    private static class Presence {
+
+        private Status status;
+        private long lastSeen;
+        private Status pushed;
+        private ScheduledFuture<?> pending;
+        private boolean removed;
+    }
+}
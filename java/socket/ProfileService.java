@@ -1,61 +1,304 @@
-package socket;
-
-import java.io.File;
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.Part;
-
-
-public class ProfileService {
-
-    // work with servlet
-    public boolean saveProfileImage(int userId, HttpServletRequest request) throws IOException, ServletException, ServletException {
-        Part profileImage = request.getPart("profileImage");
-        String appPath = request.getServletContext().getRealPath(""); //Full path of the Web Pages folder
-
-        String newPath = appPath.replace("build" + File.separator + "web", "web" + File.separator + "profile-images");
-
-        File profileFolder = new File(newPath, String.valueOf(userId));
-        if (!profileFolder.exists()) {
-            profileFolder.mkdirs();
-        }
-
-        File file1 = new File(profileFolder, "profile1.png");
-        Files.copy(profileImage.getInputStream(), file1.toPath(), StandardCopyOption.REPLACE_EXISTING);
-
-        return true;
-    }
-
-    //work with WebSocket
-    public static String getProfileUrl(int userId) {
-        try {
-
-            URL url = new URI("https://0219c9f7612d.ngrok-free.app/Chatify/profile-images/" + userId + "/profile1.png").toURL(); // java.net.URL
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection(); // java.net.HttpURLConnection
-            conn.setRequestMethod("HEAD");
-            int responseCode = conn.getResponseCode();
-            conn.connect();
-
-            String profile;
-
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                profile = ChatService.URL + "/profile-images/" + userId + "/profile1.png";
-            } else {
-                profile = "";
-            }
-            return profile;
-        } catch (IOException | URISyntaxException e) {
-            e.printStackTrace();
-            return "";
-        }
-    }
-    
-    
-}
\ No newline at end of file
+package socket;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.Part;
+
+/**
+ * Profile images on disk under web/profile-images/{userId}/. An upload is
+ * stored once under its content hash ({hash}.{ext}); a background pool then
+ * decodes it and writes square thumbnails {hash}_64.png and {hash}_256.png.
+ * Which users have an image, and which sizes are ready, is kept in memory
+ * (warmed from the folder at startup) so building a contact list costs no
+ * file or network access. Names change with the content, so every URL can
+ * be cached for good; MediaController serves them.
+ */
+public class ProfileService {
+
+    public static final int SMALL = 64; // chat list and contact rows
+    public static final int MEDIUM = 256; // profile and chat header
+    public static final int ORIGINAL = 0;
+    private static final int[] THUMB_SIZES = {SMALL, MEDIUM};
+    // -Dchatify.avatar.maxPixels=... larger uploads are not decoded (a small file can claim huge dimensions)
+    private static final long MAX_PIXELS = Long.getLong("chatify.avatar.maxPixels", 40_000_000L);
+
+    // -Dchatify.avatar.workers=... threads decoding and scaling uploads
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Integer.getInteger("chatify.avatar.workers", 2), r -> {
+                Thread t = new Thread(r, "chatify-avatar");
+                t.setDaemon(true);
+                return t;
+            });
+
+    // userId -> current image
+    private static final ConcurrentHashMap<Integer, Avatar> AVATARS = new ConcurrentHashMap<>();
+    // userId -> size asked for by that user's client, for the avatars of others
+    private static final ConcurrentHashMap<Integer, Integer> PREFERRED = new ConcurrentHashMap<>();
+
+    private static volatile File root;
+
+    // Call at startup
+    public static void warm(ServletContext context) {
+        root = profileFolder(context);
+        File[] folders = root.listFiles(File::isDirectory);
+        if (folders == null) {
+            return;
+        }
+        for (File folder : folders) {
+            try {
+                int userId = Integer.parseInt(folder.getName());
+                File original = newestOriginal(folder);
+                if (original != null) {
+                    String name = original.getName();
+                    Avatar avatar = new Avatar(name.substring(0, name.lastIndexOf('.')), name.substring(name.lastIndexOf('.') + 1));
+                    AVATARS.put(userId, avatar);
+                    thumbnails(userId, folder, avatar);
+                }
+            } catch (NumberFormatException e) {
+                // not a user folder
+            }
+        }
+        System.out.println("Avatar registry warmed with " + AVATARS.size() + " profile images");
+    }
+
+    // Call on shutdown
+    public static void shutdown() {
+        WORKERS.shutdownNow();
+    }
+
+    private static File profileFolder(ServletContext context) {
+        String appPath = context.getRealPath(""); //Full path of the Web Pages folder
+        return new File(appPath.replace("build" + File.separator + "web", "web" + File.separator + "profile-images"));
+    }
+
+    // {hash}.{ext} uploads, or the profile1.png written before thumbnails existed
+    private static File newestOriginal(File folder) {
+        File[] files = folder.listFiles((dir, name) -> name.indexOf('_') < 0 && name.indexOf('.') > 0
+                && !name.endsWith(".tmp"));
+        File newest = null;
+        if (files != null) {
+            for (File f : files) {
+                if (newest == null || f.lastModified() > newest.lastModified()) {
+                    newest = f;
+                }
+            }
+        }
+        return newest;
+    }
+
+    // work with servlet. Returns once the original is on disk, thumbnails follow in the background.
+    public boolean saveProfileImage(int userId, HttpServletRequest request) throws IOException, ServletException, ServletException {
+        Part profileImage = request.getPart("profileImage");
+        if (root == null) {
+            root = profileFolder(request.getServletContext());
+        }
+
+        File profileFolder = new File(root, String.valueOf(userId));
+        if (!profileFolder.exists()) {
+            profileFolder.mkdirs();
+        }
+
+        // stream to a temp file and hash on the way, the upload is never held in memory
+        File tmp = File.createTempFile("upload", ".tmp", profileFolder);
+        String hash;
+        String ext = extension(profileImage.getSubmittedFileName());
+        try {
+            try (InputStream in = new DigestInputStream(profileImage.getInputStream(), sha256())) {
+                Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                hash = hex(((DigestInputStream) in).getMessageDigest().digest(), 10);
+            }
+            File original = new File(profileFolder, hash + "." + ext);
+            Files.move(tmp.toPath(), original.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath()); // gone after the move, left over if the upload failed
+        }
+
+        Avatar avatar = new Avatar(hash, ext);
+        AVATARS.put(userId, avatar); // the original is served until the thumbnails are ready
+        thumbnails(userId, profileFolder, avatar);
+        return true;
+    }
+
+    private static void thumbnails(int userId, File folder, Avatar avatar) {
+        WORKERS.execute(() -> {
+            try {
+                BufferedImage image = null;
+                for (int i = 0; i < THUMB_SIZES.length; i++) {
+                    int size = THUMB_SIZES[i];
+                    File thumb = new File(folder, avatar.base + "_" + size + ".png");
+                    if (!thumb.isFile()) {
+                        if (image == null) {
+                            image = decode(new File(folder, avatar.base + "." + avatar.ext)); // decoded once
+                            if (image == null) {
+                                System.out.println("⚠️ Profile image of user " + userId + " is not a readable image or too large");
+                                return;
+                            }
+                        }
+                        File tmp = new File(folder, avatar.base + "_" + size + ".tmp");
+                        ImageIO.write(square(image, size), "png", tmp);
+                        Files.move(tmp.toPath(), thumb.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    avatar.ready |= 1 << i;
+                }
+                if (AVATARS.get(userId) == avatar) { // not replaced by a newer upload meanwhile
+                    removeStale(folder, avatar.base);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("⚠️ Thumbnails failed for user " + userId);
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // Checks the dimensions from the header before decoding, null when unreadable or over MAX_PIXELS
+    private static BufferedImage decode(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Center crop to a square, then scale in halving steps so large photos stay smooth
+    private static BufferedImage square(BufferedImage image, int size) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        BufferedImage current = image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2, side, side);
+        int w = side;
+        do {
+            w = Math.max(size, w / 2);
+            BufferedImage next = new BufferedImage(w, w, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(current, 0, 0, w, w, null);
+            g.dispose();
+            current = next;
+        } while (w > size);
+        return current;
+    }
+
+    // Files of earlier uploads, once the new thumbnails are there
+    private static void removeStale(File folder, String base) {
+        File[] files = folder.listFiles((dir, name) -> !name.startsWith(base) && !name.endsWith(".tmp"));
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+    }
+
+    // Clients send "avatarSize" with get_chat_list / get_all_users; it sticks for later pushes
+    public static void setPreferredSize(int viewerId, int size) {
+        if (size > 0) {
+            PREFERRED.put(viewerId, size);
+        }
+    }
+
+    public static int preferredSize(int viewerId, int fallback) {
+        return PREFERRED.getOrDefault(viewerId, fallback);
+    }
+
+    //work with WebSocket
+    public static String getProfileUrl(int userId) {
+        return getProfileUrl(userId, ORIGINAL);
+    }
+
+    // Smallest stored size covering the requested one, the original while thumbnails are pending
+    public static String getProfileUrl(int userId, int size) {
+        Avatar avatar = AVATARS.get(userId);
+        if (avatar == null) {
+            return "";
+        }
+        String file = avatar.base + "." + avatar.ext;
+        for (int i = 0; i < THUMB_SIZES.length && size != ORIGINAL; i++) {
+            if (size <= THUMB_SIZES[i]) {
+                if ((avatar.ready & (1 << i)) != 0) {
+                    file = avatar.base + "_" + THUMB_SIZES[i] + ".png";
+                }
+                break;
+            }
+        }
+        return ChatService.URL + "media/profile-images/" + userId + "/" + file;
+    }
+
+    // For MediaController, null before the folder is known
+    public static File file(int userId, String name) {
+        File folder = root;
+        return folder == null ? null : new File(new File(folder, String.valueOf(userId)), name);
+    }
+
+    // {hash}.{ext} and {hash}_{size}.png never change their bytes
+    public static boolean isContentHashed(String name) {
+        return name.matches("[0-9a-f]{20}(_\\d+)?\\.[a-z]+");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE has it
+        }
+    }
+
+    static String hex(byte[] bytes, int length) {
+        StringBuilder sb = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            sb.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static String extension(String fileName) {
+        if (fileName != null) {
+            String ext = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+            if (ext.matches("png|jpe?g|gif|webp|bmp")) {
+                return ext;
+            }
+        }
+        return "png";
+    }
+
+    private static class Avatar {
+
+        private final String base; // content hash, or "profile1" for old uploads
+        private final String ext;
+        private volatile int ready; // bit i set when THUMB_SIZES[i] is on disk
+
+        Avatar(String base, String ext) {
+            this.base = base;
+            this.ext = ext;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package socket;
+
+import dto.ChatDTO;
+import entity.Status;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The newest chats of recently active conversations, so the first
+ * single_chat page of a hot conversation needs no query. Each conversation
+ * keeps a ring of at most TAIL_SIZE chats, filled from the first page read
+ * and then kept current by the write paths. Conversations are evicted least
+ * recently used first once the estimated size passes MAX_BYTES.
+ *
+ * The tails only see writes made on this node, so the cache is off unless
+ * the in-memory router is used (-Dchatify.router=memory): with several
+ * nodes another node's chats, deletes and receipts would never reach it.
+ */
+public class RecentChatCache {
+
+    // -Dchatify.cache.tailSize=... chats kept per conversation
+    private static final int TAIL_SIZE = Integer.getInteger("chatify.cache.tailSize", 50);
+    // -Dchatify.cache.maxBytes=... estimated heap for all conversations together
+    private static final long MAX_BYTES = Long.getLong("chatify.cache.maxBytes", 64L * 1024 * 1024);
+    // single node only, see above
+    private static final boolean ENABLED = "memory".equals(System.getProperty("chatify.router", "memory"));
+
+    private static final LinkedHashMap<Long, Tail> TAILS = new LinkedHashMap<>(256, 0.75f, true);
+    private static final AtomicLong BYTES = new AtomicLong();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    // bumped by every write to a conversation, cached or not, see stamp()
+    private static final AtomicLongArray STAMPS = new AtomicLongArray(1024);
+
+    public static class Page {
+
+        public final List<ChatDTO> rows;
+        public final boolean hasMore;
+
+        Page(List<ChatDTO> rows, boolean hasMore) {
+            this.rows = rows;
+            this.hasMore = hasMore;
+        }
+    }
+
+    // Newest size chats, newest first, or null when the tail can't answer on its own
+    public static Page firstPage(long conversationId, int size) {
+        if (!ENABLED) {
+            return null;
+        }
+        Tail tail = get(conversationId);
+        Page page = tail == null ? null : tail.page(size);
+        if (page == null) {
+            MISSES.increment();
+        } else {
+            HITS.increment();
+        }
+        return page;
+    }
+
+    // Take before reading a first page from the DB and pass it to load()
+    public static long stamp(long conversationId) {
+        return STAMPS.get(stripe(conversationId));
+    }
+
+    // After a first page was read from the DB: rows newest first, complete when nothing is older.
+    // Dropped when the conversation was written since stamp, the rows may miss that write.
+    public static void load(long conversationId, long stamp, List<ChatDTO> rows, boolean complete) {
+        if (!ENABLED) {
+            return; // nothing is ever cached, so the write paths find no tail either
+        }
+        Tail tail = new Tail();
+        for (int i = Math.min(rows.size(), TAIL_SIZE) - 1; i >= 0; i--) {
+            tail.add(rows.get(i));
+        }
+        tail.complete = complete && rows.size() <= TAIL_SIZE;
+        synchronized (TAILS) {
+            if (STAMPS.get(stripe(conversationId)) != stamp) {
+                return;
+            }
+            Tail old = TAILS.put(conversationId, tail);
+            if (old != null) {
+                BYTES.addAndGet(-old.bytes);
+            }
+            BYTES.addAndGet(tail.bytes);
+            evict();
+        }
+    }
+
+    // Write-through for a committed chat. Conversations that aren't cached stay that way.
+    public static void append(long conversationId, ChatDTO chat) {
+        Tail tail = touch(conversationId);
+        if (tail != null) {
+            BYTES.addAndGet(tail.add(chat));
+            if (BYTES.get() > MAX_BYTES) {
+                synchronized (TAILS) {
+                    evict();
+                }
+            }
+        }
+    }
+
+    public static void remove(long conversationId, long chatId) {
+        Tail tail = touch(conversationId);
+        if (tail != null) {
+            BYTES.addAndGet(tail.remove(chatId));
+        }
+    }
+
+    // TRUE when readerId has inbound chats that aren't READ yet, null when the tail can't tell
+    public static Boolean hasUnread(long conversationId, int readerId) {
+        Tail tail = get(conversationId);
+        return tail == null ? null : tail.hasUnread(readerId);
+    }
+
+    // Mirrors ConversationSummaryService.advanceReadWatermark
+    public static void markRead(long conversationId, int readerId, long watermark) {
+        Tail tail = touch(conversationId);
+        if (tail != null) {
+            tail.mark(readerId, watermark, Status.READ);
+        }
+    }
+
+    // Mirrors the SENT -> DELIVERED update in UserService.updateFriendChatStatus
+    public static void markDelivered(long conversationId, int recipientId, long upToId) {
+        Tail tail = touch(conversationId);
+        if (tail != null) {
+            tail.mark(recipientId, upToId, Status.DELIVERED);
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        long hits = HITS.sum();
+        long misses = MISSES.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", EVICTIONS.sum());
+        stats.put("bytes", BYTES.get());
+        synchronized (TAILS) {
+            stats.put("conversations", TAILS.size());
+        }
+        return stats;
+    }
+
+    // Reads and writes both count as activity for LRU
+    private static Tail get(long conversationId) {
+        synchronized (TAILS) {
+            return TAILS.get(conversationId);
+        }
+    }
+
+    // Every write path goes through here; under the same lock as load() so a
+    // write is either seen by load's stamp check or applied to the loaded tail
+    private static Tail touch(long conversationId) {
+        synchronized (TAILS) {
+            STAMPS.incrementAndGet(stripe(conversationId));
+            return TAILS.get(conversationId);
+        }
+    }
+
+    // Caller holds the TAILS lock
+    private static void evict() {
+        Iterator<Tail> it = TAILS.values().iterator();
+        while (BYTES.get() > MAX_BYTES && it.hasNext()) {
+            Tail eldest = it.next();
+            it.remove();
+            BYTES.addAndGet(-eldest.bytes);
+            EVICTIONS.increment();
+        }
+    }
+
+    private static int stripe(long conversationId) {
+        return (Long.hashCode(conversationId) * 0x9E3779B9 >>> 22) & (STAMPS.length() - 1);
+    }
+
+    private static long sizeOf(ChatDTO chat) {
+        // object headers and fields, plus the two strings as UTF-16
+        return 96 + 2L * (length(chat.getMessage()) + length(chat.getFiles()));
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static class Tail {
+
+        private final ChatDTO[] ring = new ChatDTO[TAIL_SIZE];
+        private int head; // slot of the oldest chat
+        private int count;
+        private long bytes;
+        private boolean complete; // the ring holds every chat of the conversation
+
+        private ChatDTO at(int i) { // 0 is the oldest
+            return ring[(head + i) % ring.length];
+        }
+
+        private void set(int i, ChatDTO chat) {
+            ring[(head + i) % ring.length] = chat;
+        }
+
+        // Keeps id order even when two senders' acks race. Returns the change in bytes.
+        synchronized long add(ChatDTO chat) {
+            // a page read after the commit may have loaded it before the sender's write-through
+            for (int i = count - 1; i >= 0 && at(i).getId() >= chat.getId(); i--) {
+                if (at(i).getId() == chat.getId()) {
+                    return 0;
+                }
+            }
+            long delta = sizeOf(chat);
+            if (count == ring.length) {
+                if (chat.getId() < at(0).getId()) {
+                    return 0; // older than everything we keep
+                }
+                delta -= sizeOf(at(0));
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                count--;
+                complete = false;
+            }
+            int i = count;
+            while (i > 0 && at(i - 1).getId() > chat.getId()) {
+                set(i, at(i - 1));
+                i--;
+            }
+            set(i, chat);
+            count++;
+            bytes += delta;
+            return delta;
+        }
+
+        synchronized long remove(long chatId) {
+            for (int i = 0; i < count; i++) {
+                if (at(i).getId() == chatId) {
+                    long delta = -sizeOf(at(i));
+                    for (int j = i; j < count - 1; j++) {
+                        set(j, at(j + 1));
+                    }
+                    set(count - 1, null);
+                    count--;
+                    bytes += delta;
+                    return delta;
+                }
+            }
+            return 0;
+        }
+
+        synchronized Page page(int size) {
+            if (count < size && !complete) {
+                return null; // older chats are only in the DB
+            }
+            int n = Math.min(size, count);
+            List<ChatDTO> rows = new ArrayList<>(n);
+            for (int i = count - 1; i >= count - n; i--) {
+                rows.add(copy(at(i)));
+            }
+            return new Page(rows, count > n || !complete);
+        }
+
+        synchronized Boolean hasUnread(int readerId) {
+            for (int i = count - 1; i >= 0; i--) {
+                ChatDTO chat = at(i);
+                if (chat.getToId() == readerId) {
+                    // READ is always a prefix: once one is READ, everything older is too
+                    return chat.getStatus() != Status.READ;
+                }
+            }
+            return complete ? Boolean.FALSE : null;
+        }
+
+        synchronized void mark(int recipientId, long upToId, Status status) {
+            for (int i = 0; i < count; i++) {
+                ChatDTO chat = at(i);
+                if (chat.getToId() == recipientId && chat.getId() <= upToId
+                        && (status == Status.READ ? chat.getStatus() != Status.READ : chat.getStatus() == Status.SENT)) {
+                    chat.setStatus(status);
+                }
+            }
+        }
+
+        // Callers serialize outside the lock, so they get a snapshot
+        private static ChatDTO copy(ChatDTO chat) {
+            ChatDTO c = new ChatDTO();
+            c.setId(chat.getId());
+            c.setFromId(chat.getFromId());
+            c.setToId(chat.getToId());
+            c.setMessage(chat.getMessage());
+            c.setFiles(chat.getFiles());
+            c.setStatus(chat.getStatus());
+            c.setCreatedAt(chat.getCreatedAt());
+            c.setUpdatedAt(chat.getUpdatedAt());
+            return c;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package socket;
+
+import dto.ChatDTO;
+import entity.ChangeLog;
+import entity.FriendList;
+import entity.Status;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import util.HibernateUtil;
+import util.SnowflakeIdGenerator;
+
+/**
+ * Catch-up for reconnecting clients. Every write path records what changed
+ * for whom in change_log (same transaction), and a "sync" frame returns only
+ * the entries after the client's version instead of full snapshots. The log
+ * is compacted in the background: superseded watermarks and chats that were
+ * deleted again are dropped, and anything past the retention is removed,
+ * after which such clients are told to reset.
+ */
+public class SyncService {
+
+    // -Dchatify.sync.maxChanges=... log entries per sync frame, the client asks again while "more"
+    private static final int MAX_CHANGES = Integer.getInteger("chatify.sync.maxChanges", 500);
+    // -Dchatify.sync.retentionHours=... older clients get a reset and reload snapshots
+    private static final long RETENTION_MS = TimeUnit.HOURS.toMillis(Long.getLong("chatify.sync.retentionHours", 72L));
+    // -Dchatify.sync.compactMs=... how often the log is compacted
+    private static final long COMPACT_MS = Long.getLong("chatify.sync.compactMs", TimeUnit.HOURS.toMillis(1));
+    // entries this young may still have an uncommitted neighbour with a lower id
+    private static final long SETTLE_MS = 2000;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "chatify-sync-compact");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        SCHEDULER.scheduleWithFixedDelay(SyncService::compactSafely, COMPACT_MS, COMPACT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Call inside the transaction that made the change
+    public static void record(Session s, int userId, ChangeLog.Kind kind, int friendId, long refId) {
+        s.save(new ChangeLog(userId, kind, friendId, refId));
+    }
+
+    public static void sync(int userId, long since) {
+        Map<String, Object> payload = new HashMap<>();
+        long settled = SnowflakeIdGenerator.floor(System.currentTimeMillis() - SETTLE_MS);
+
+        if (since < SnowflakeIdGenerator.floor(System.currentTimeMillis() - RETENTION_MS)) {
+            // too old (or a first sync): reload snapshots, then sync from here
+            payload.put("reset", true);
+            payload.put("version", Long.toString(settled));
+            send(userId, payload);
+            return;
+        }
+
+        Set<Long> added = new LinkedHashSet<>();
+        List<Long> deleted = new ArrayList<>();
+        Map<Integer, Long> read = new LinkedHashMap<>();
+        Map<Integer, Long> delivered = new LinkedHashMap<>();
+        Set<Integer> contacts = new LinkedHashSet<>();
+        List<ChatDTO> messages = new ArrayList<>();
+        List<Object> contactList = new ArrayList<>();
+        long version = since;
+        boolean more;
+
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        try {
+            List<ChangeLog> changes = s.createQuery("FROM ChangeLog l WHERE l.userId = :userId AND l.id > :since ORDER BY l.id", ChangeLog.class)
+                    .setParameter("userId", userId)
+                    .setParameter("since", since)
+                    .setMaxResults(MAX_CHANGES + 1)
+                    .list();
+            more = changes.size() > MAX_CHANGES;
+            for (int i = 0; i < changes.size() && i < MAX_CHANGES; i++) {
+                ChangeLog change = changes.get(i);
+                switch (change.getKind()) {
+                    case NEW:
+                        added.add(change.getRefId());
+                        break;
+                    case DELETE:
+                        if (!added.remove(change.getRefId())) { // never seen by the client, nothing to undo
+                            deleted.add(change.getRefId());
+                        }
+                        break;
+                    case READ:
+                        read.merge(change.getFriendId(), change.getRefId(), Math::max);
+                        break;
+                    case DELIVERED:
+                        delivered.merge(change.getFriendId(), change.getRefId(), Math::max);
+                        break;
+                    case CONTACT:
+                        contacts.add(change.getFriendId());
+                        break;
+                }
+                version = change.getId();
+            }
+
+            if (!added.isEmpty()) {
+                List<Object[]> rows = s.createQuery("SELECT c.id, c.from.id, c.to.id, c.message, c.files, c.status, c.createdAt, c.updatedAt"
+                        + " FROM Chat c WHERE c.id IN (:ids) ORDER BY c.id", Object[].class)
+                        .setParameterList("ids", added)
+                        .list();
+                for (Object[] r : rows) {
+                    ChatDTO dto = new ChatDTO();
+                    dto.setId((Long) r[0]);
+                    dto.setFromId((Integer) r[1]);
+                    dto.setToId((Integer) r[2]);
+                    dto.setMessage((String) r[3]);
+                    dto.setFiles((String) r[4]);
+                    dto.setStatus((Status) r[5]);
+                    dto.setCreatedAt((Date) r[6]);
+                    dto.setUpdatedAt((Date) r[7]);
+                    messages.add(dto);
+                }
+            }
+
+            if (!contacts.isEmpty()) {
+                List<FriendList> friends = s.createQuery("FROM FriendList f WHERE f.userId.id = :userId AND f.friendId.id IN (:ids)", FriendList.class)
+                        .setParameter("userId", userId)
+                        .setParameterList("ids", contacts)
+                        .list();
+                for (FriendList friend : friends) {
+                    contactList.add(UserService.contactDTO(friend));
+                }
+            }
+        } finally {
+            s.close();
+        }
+
+        payload.put("messages", messages);
+        payload.put("deleted", deleted);
+        payload.put("read", watermarks(read, "lastReadId"));
+        payload.put("delivered", watermarks(delivered, "lastDeliveredId"));
+        payload.put("contacts", contactList);
+        // a young entry may still get an older neighbour, so don't move past it; re-sent changes are idempotent
+        payload.put("version", Long.toString(Math.max(since, Math.min(version, settled))));
+        // once clamped, asking again would return the same page, the rest comes with a later sync
+        payload.put("more", more && version <= settled);
+        send(userId, payload);
+    }
+
+    private static List<Map<String, Object>> watermarks(Map<Integer, Long> byFriend, String name) {
+        List<Map<String, Object>> list = new ArrayList<>(byFriend.size());
+        for (Map.Entry<Integer, Long> e : byFriend.entrySet()) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("friendId", e.getKey());
+            m.put(name, e.getValue());
+            list.add(m);
+        }
+        return list;
+    }
+
+    private static void send(int userId, Map<String, Object> payload) {
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "sync");
+        envelope.put("payload", payload);
+        ChatService.sendToUser(userId, envelope);
+    }
+
+    private static void compactSafely() {
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Change log compaction failed");
+            e.printStackTrace();
+        }
+    }
+
+    public static void compact() {
+        long horizon = SnowflakeIdGenerator.floor(System.currentTimeMillis() - RETENTION_MS);
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        Transaction tr = s.beginTransaction();
+        try {
+            s.doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "DELETE FROM change_log WHERE id < ?")) {
+                    ps.setLong(1, horizon);
+                    ps.executeUpdate();
+                }
+                // only the newest watermark / contact change per friend matters
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "DELETE a FROM change_log a JOIN change_log b"
+                        + " ON b.user_id = a.user_id AND b.kind = a.kind AND b.friend_id = a.friend_id AND b.id > a.id"
+                        + " WHERE a.kind IN ('READ', 'DELIVERED', 'CONTACT')")) {
+                    ps.executeUpdate();
+                }
+                // a chat that is gone again needs no NEW, the DELETE stays for clients that saw it
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "DELETE a FROM change_log a JOIN change_log b"
+                        + " ON b.user_id = a.user_id AND b.ref_id = a.ref_id AND b.kind = 'DELETE'"
+                        + " WHERE a.kind = 'NEW'")) {
+                    ps.executeUpdate();
+                }
+            });
+            tr.commit();
+        } catch (RuntimeException e) {
+            tr.rollback();
+            throw e;
+        } finally {
+            s.close();
+        }
+    }
+
+    // Call on shutdown
+    public static void shutdown() {
+        SCHEDULER.shutdownNow();
+    }
+}
@@ -0,0 +1,432 @@
+package socket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plain TCP links between nodes, one outbound connection per peer. Meant for
+ * a handful of nodes on a LAN or several nodes on one machine:
+ *
+ * -Dchatify.router=tcp -Dchatify.router.port=7071
+ * -Dchatify.router.peers=node2@127.0.0.1:7072,node3@127.0.0.1:7073
+ * -Dchatify.router.bind=10.0.0.5   (loopback by default)
+ *
+ * The port is unauthenticated apart from this: a link is only accepted when
+ * its HELLO names a configured peer and it comes from that peer's address,
+ * and bodies over chatify.router.maxBody close the link. Keep it on a
+ * private network.
+ *
+ * Frames to a peer go through a bounded queue and a writer thread, so
+ * deliver() never blocks. An idle link carries a heartbeat every
+ * chatify.router.heartbeatMs and a link silent for three of them is closed,
+ * so a half-open peer is noticed. A link that drops is retried: DELIVER
+ * frames of a batch that failed are sent again on the next link, numbered
+ * so the receiver drops the ones it already had, and the local presence
+ * snapshot is resent on every (re)connect. A new link from a node replaces
+ * the older one and resets that node's presence before its snapshot, and
+ * only the current link reports the node lost when it closes.
+ */
+public class TcpNodeChannel implements NodeChannel {
+
+    private static final byte HELLO = 1;
+    private static final byte ONLINE = 2;
+    private static final byte OFFLINE = 3;
+    private static final byte DELIVER = 4;
+    private static final byte HEARTBEAT = 5;
+
+    // -Dchatify.router.queueSize=... frames buffered per peer while it is slow or down
+    private static final int QUEUE_SIZE = Integer.getInteger("chatify.router.queueSize", 10_000);
+    // -Dchatify.router.maxBody=... largest routed frame in bytes
+    private static final int MAX_BODY = Integer.getInteger("chatify.router.maxBody", 4 * 1024 * 1024);
+    // -Dchatify.router.heartbeatMs=... idle links send one this often, three missed close the link
+    private static final int HEARTBEAT_MS = Integer.getInteger("chatify.router.heartbeatMs", 2000);
+    private static final long RETRY_MS = 1000;
+
+    private final String bindHost;
+    private final int port;
+    private final Map<String, InetSocketAddress> peerAddresses;
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    // node id -> its current inbound link
+    private final Map<String, Link> links = new ConcurrentHashMap<>();
+    // sent in HELLO; a receiver keeps DELIVER numbers per sender epoch, a restart starts over
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+    private final LongAdder dropped = new LongAdder();
+    private String nodeId;
+    private Listener listener;
+    private ServerSocket server;
+    private volatile boolean closed;
+
+    public TcpNodeChannel(String bindHost, int port, Map<String, InetSocketAddress> peerAddresses) {
+        this.bindHost = bindHost;
+        this.port = port;
+        this.peerAddresses = peerAddresses;
+    }
+
+    // "node2@127.0.0.1:7072,node3@127.0.0.1:7073"
+    public static Map<String, InetSocketAddress> parsePeers(String spec) {
+        Map<String, InetSocketAddress> peers = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int at = entry.indexOf('@');
+            int colon = entry.lastIndexOf(':');
+            if (at <= 0 || colon < at) {
+                throw new IllegalArgumentException("Bad peer '" + entry + "', expected id@host:port");
+            }
+            peers.put(entry.substring(0, at), new InetSocketAddress(
+                    entry.substring(at + 1, colon), Integer.parseInt(entry.substring(colon + 1))));
+        }
+        return peers;
+    }
+
+    @Override
+    public void start(String nodeId, Listener listener) {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        try {
+            server = new ServerSocket();
+            server.bind(new InetSocketAddress(bindHost, port));
+        } catch (IOException e) {
+            throw new IllegalStateException("Router could not listen on " + bindHost + ":" + port, e);
+        }
+        daemon("chatify-router-accept", this::acceptLoop).start();
+        for (Map.Entry<String, InetSocketAddress> entry : peerAddresses.entrySet()) {
+            if (!entry.getKey().equals(nodeId)) {
+                Peer peer = new Peer(entry.getKey(), entry.getValue());
+                peers.put(entry.getKey(), peer);
+                daemon("chatify-router-" + entry.getKey(), peer::writeLoop).start();
+            }
+        }
+    }
+
+    @Override
+    public void deliver(String nodeId, int userId, String type, String text) {
+        Peer peer = peers.get(nodeId);
+        if (peer == null) {
+            return;
+        }
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 40);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DELIVER);
+            out.writeLong(0); // sequence, numbered by the writer
+            out.writeInt(userId);
+            out.writeUTF(type == null ? "" : type);
+            out.writeInt(body.length);
+            out.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory stream
+        }
+        peer.offer(bytes.toByteArray());
+    }
+
+    @Override
+    public void announce(int userId, boolean online) {
+        byte[] message = presence(userId, online);
+        for (Peer peer : peers.values()) {
+            peer.offer(message);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Peer peer : peers.values()) {
+            peer.disconnect();
+        }
+    }
+
+    // DELIVER: op, then the sequence number
+    private static long sequence(byte[] message) {
+        long seq = 0;
+        for (int i = 1; i <= 8; i++) {
+            seq = (seq << 8) | (message[i] & 0xFF);
+        }
+        return seq;
+    }
+
+    private static void setSequence(byte[] message, long seq) {
+        for (int i = 8; i >= 1; i--) {
+            message[i] = (byte) seq;
+            seq >>>= 8;
+        }
+    }
+
+    private static byte[] presence(int userId, boolean online) {
+        return new byte[]{online ? ONLINE : OFFLINE,
+            (byte) (userId >>> 24), (byte) (userId >>> 16), (byte) (userId >>> 8), (byte) userId};
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                daemon("chatify-router-in", () -> readLoop(socket)).start();
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        String remote = null;
+        Link link = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            socket.setSoTimeout(HEARTBEAT_MS * 3);
+            socket.setKeepAlive(true);
+            if (in.readByte() != HELLO) {
+                throw new IOException("Peer did not say hello");
+            }
+            String hello = in.readUTF();
+            long helloEpoch = in.readLong();
+            InetSocketAddress expected = peerAddresses.get(hello);
+            if (hello.equals(nodeId) || expected == null || !socket.getInetAddress().equals(expected.getAddress())) {
+                throw new IOException("Unknown peer '" + hello + "' from " + socket.getInetAddress());
+            }
+            remote = hello;
+            Link[] replaced = new Link[1];
+            link = links.compute(remote, (id, old) -> {
+                replaced[0] = old;
+                // same sender epoch: continue its DELIVER numbering, resent frames are recognised
+                return new Link(socket, helloEpoch, old != null && old.epoch == helloEpoch ? old.lastSeq : new AtomicLong());
+            });
+            if (replaced[0] != null) {
+                // the peer reconnected: whatever the old link said about presence is replaced by the snapshot that follows
+                replaced[0].close();
+                listener.onNodeLost(remote);
+            }
+            while (!closed) {
+                byte op = in.readByte();
+                switch (op) {
+                    case ONLINE:
+                    case OFFLINE:
+                        listener.onPresence(remote, in.readInt(), op == ONLINE);
+                        break;
+                    case HEARTBEAT:
+                        break;
+                    case DELIVER: {
+                        long seq = in.readLong();
+                        int userId = in.readInt();
+                        String type = in.readUTF();
+                        int length = in.readInt();
+                        if (length < 0 || length > MAX_BODY) {
+                            throw new IOException("Frame of " + length + " bytes over chatify.router.maxBody");
+                        }
+                        byte[] body = new byte[length];
+                        in.readFully(body);
+                        if (link.accept(seq)) { // not a resend of one we already have
+                            listener.onDeliver(userId, type.isEmpty() ? null : type, new String(body, StandardCharsets.UTF_8));
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown router op " + op);
+                }
+            }
+        } catch (EOFException e) {
+            // peer closed the link
+        } catch (IOException e) {
+            if (!closed && (link == null || link.current)) {
+                System.out.println("⚠️ Router link from " + (remote == null ? socket.getInetAddress() : remote)
+                        + " failed: " + e.getMessage());
+            }
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already gone
+            }
+            // a link that was replaced says nothing, the newer one owns that node's presence
+            if (link != null && links.remove(remote, link)) {
+                listener.onNodeLost(remote);
+                Peer peer = peers.get(remote);
+                if (peer != null) {
+                    peer.disconnect(); // its side went quiet too, most likely; reconnect rather than write into the void
+                }
+            }
+        }
+    }
+
+    private static Thread daemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // One accepted connection. lastSeq is shared by the links of one sender epoch.
+    private static class Link {
+
+        private final Socket socket;
+        private final long epoch;
+        private final AtomicLong lastSeq;
+        private volatile boolean current = true;
+
+        Link(Socket socket, long epoch, AtomicLong lastSeq) {
+            this.socket = socket;
+            this.epoch = epoch;
+            this.lastSeq = lastSeq;
+        }
+
+        boolean accept(long seq) {
+            while (true) {
+                long last = lastSeq.get();
+                if (seq <= last) {
+                    return false;
+                }
+                if (lastSeq.compareAndSet(last, seq)) {
+                    return true;
+                }
+            }
+        }
+
+        void close() {
+            current = false;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already gone
+            }
+        }
+    }
+
+    private class Peer {
+
+        private final String id;
+        private final InetSocketAddress address;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private volatile Socket socket;
+        private long seq; // writer thread only
+
+        Peer(String id, InetSocketAddress address) {
+            this.id = id;
+            this.address = address;
+        }
+
+        void offer(byte[] message) {
+            if (!queue.offer(message)) {
+                dropped.increment();
+                System.out.println("⚠️ Router queue to " + id + " full, dropping " + describe(message)
+                        + " (" + dropped.sum() + " dropped so far)");
+            }
+        }
+
+        void writeLoop() {
+            DataOutputStream out = null;
+            List<byte[]> batch = new ArrayList<>();
+            while (!closed) {
+                try {
+                    if (out == null) {
+                        out = connect();
+                    }
+                    if (batch.isEmpty()) {
+                        byte[] message = queue.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                        if (message == null) {
+                            out.writeByte(HEARTBEAT); // also how a dead link gets noticed and retried
+                        } else {
+                            batch.add(message);
+                            queue.drainTo(batch);
+                        }
+                    }
+                    for (byte[] message : batch) {
+                        if (message[0] == DELIVER && sequence(message) == 0) {
+                            setSequence(message, ++seq); // kept if the batch is resent
+                        }
+                        out.write(message);
+                    }
+                    out.flush();
+                    batch.clear();
+                } catch (IOException e) {
+                    out = null;
+                    disconnect();
+                    retain(batch, e);
+                    sleep();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        // After a failed write: DELIVER frames go again on the next link (the receiver drops the
+        // ones it got), presence updates don't, the snapshot sent on connect supersedes them
+        private void retain(List<byte[]> batch, IOException e) {
+            int before = batch.size();
+            batch.removeIf(message -> message[0] != DELIVER);
+            int lost = before - batch.size();
+            dropped.add(lost);
+            if (before > 0) {
+                System.out.println("⚠️ Router link to " + id + " failed (" + e.getMessage() + "): "
+                        + batch.size() + " frames resent after reconnect, " + lost + " presence updates dropped");
+            }
+        }
+
+        private DataOutputStream connect() throws IOException {
+            Socket s = new Socket();
+            s.connect(address, (int) RETRY_MS);
+            s.setTcpNoDelay(true);
+            socket = s;
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.writeByte(HELLO);
+            out.writeUTF(nodeId);
+            out.writeLong(epoch);
+            for (int userId : listener.localUsers()) {
+                out.write(presence(userId, true));
+            }
+            out.flush();
+            return out;
+        }
+
+        void disconnect() {
+            Socket s = socket;
+            socket = null;
+            if (s != null) {
+                try {
+                    s.close();
+                } catch (IOException e) {
+                    // already gone
+                }
+            }
+        }
+
+        private String describe(byte[] message) {
+            return message[0] == DELIVER ? "a DELIVER frame" : "a presence update";
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
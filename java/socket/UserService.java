@@ -1,172 +1,231 @@
-package socket;
-
-import com.google.gson.JsonObject;
-import dto.UserDTO;
-import entity.Chat;
-import entity.FriendList;
-import entity.Status;
-import entity.User;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import org.hibernate.Criteria;
-import org.hibernate.HibernateException;
-import org.hibernate.Session;
-import org.hibernate.Transaction;
-import org.hibernate.criterion.Criterion;
-import org.hibernate.criterion.Restrictions;
-import util.HibernateUtil;
-
-public class UserService {
-
-    // Call @OnOpen
-    public static void updateLogInStatus(int userId) {
-        updateStatus(userId, Status.ONLINE);
-    }
-
-    // Call @OnClose
-    public static void updateLogOutStatus(int userId) {
-        updateStatus(userId, Status.OFFLINE);
-    }
-
-    private static void updateStatus(int userId, Status status) {
-        Session s = HibernateUtil.getSessionFactory().openSession();
-        User fromUser = (User) s.get(User.class, userId);
-        fromUser.setStatus(status);
-        fromUser.setUpdatedAt(new Date());
-        s.update(fromUser);
-        s.beginTransaction().commit();
-    }
-
-    public static void updateFriendChatStatus(int userId) {
-        Session s = HibernateUtil.getSessionFactory().openSession();
-        Criteria c1 = s.createCriteria(FriendList.class);
-        c1.add(Restrictions.eq("userId.id", userId));
-        c1.add(Restrictions.eq("status", Status.ACTIVE));
-        //get active friend list
-        List<FriendList> myFriends = c1.list();
-
-        Transaction tr = s.beginTransaction();
-        for (FriendList myFriend : myFriends) {
-            User me = myFriend.getUserId();
-            User friend = myFriend.getFriendId();
-
-            if (me.getStatus().equals(Status.ONLINE)) {
-                Criteria c2 = s.createCriteria(Chat.class);
-                Criterion rest1 = Restrictions.and(Restrictions.eq("from", friend),
-                        Restrictions.eq("to", me), Restrictions.eq("status", Status.SENT));
-                c2.add(rest1);
-                List<Chat> chats = c2.list();
-                for (Chat chat : chats) {
-                    chat.setStatus(Status.DELIVERED);
-                    chat.setUpdatedAt(new Date());
-                    s.update(chat);
-                }
-            }
-        }
-        tr.commit();
-        s.close();
-    }
-
-    public static Map<String, Object> getFriendData(int friendId) { // single chat header details
-        Session s = HibernateUtil.getSessionFactory().openSession();
-        User friend = (User) s.get(User.class, friendId);
-        s.close();
-        Map<String, Object> envelope = new HashMap<>();
-        envelope.put("type", "friend_data");
-        envelope.put("payload", friend);
-        return envelope;
-    }
-
-    public static Map<String, Object> getAllUsers(int userId) {
-        try {
-            Session s = HibernateUtil.getSessionFactory().openSession();
-            Map<String, Object> map = new HashMap();
-            List<UserDTO> userDTOs = new ArrayList<>();
-
-            Criteria c1 = s.createCriteria(FriendList.class);
-            c1.add(Restrictions.eq("userId.id", userId));
-            c1.add(Restrictions.eq("status", Status.ACTIVE));
-            List<FriendList> myFriends = c1.list();
-
-            for (FriendList myFriend : myFriends) {
-                User user = myFriend.getFriendId(); // User Object
-                UserDTO dto = new UserDTO();
-                dto.setId(user.getId());
-                dto.setFirstName(user.getFirstName());
-                dto.setLastName(user.getLastName());
-                dto.setDisplayName(myFriend.getDisplayName()); // From FriendList Table
-                dto.setCountryCode(user.getCountryCode());
-                dto.setContactNo(user.getContactNo());
-                dto.setProfileImage(
-                        ProfileService.getProfileUrl(user.getId()));
-                dto.setCreatedAt(user.getCreatedAt());
-                dto.setUpdatedAt(user.getUpdatedAt());
-                dto.setStatus(user.getStatus());
-                userDTOs.add(dto);
-            }
-            s.close();
-            map.put("type", "all_users");
-            map.put("payload", userDTOs);
-            return map;
-        } catch (HibernateException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    public static Map<String, Object> saveNewContact(int myId, User user) {
-        Session s = HibernateUtil.getSessionFactory().openSession();
-
-        JsonObject responseObject = new JsonObject();
-        responseObject.addProperty("responseStatus", Boolean.FALSE);
-        Criteria c1 = s.createCriteria(User.class);
-        c1.add(Restrictions.and(Restrictions.eq("countryCode", user.getCountryCode()),
-                Restrictions.eq("contactNo", user.getContactNo())));
-        User u1 = (User) c1.uniqueResult();
-        if (u1 == null) {
-            responseObject.addProperty("message", "This user not in ChatApp");
-        } else {
-            User me = (User) s.get(User.class, myId);
-            //Check this user already added to the FriendList Tabele
-            Criteria c2 = s.createCriteria(FriendList.class);
-            c2.add(Restrictions.and(Restrictions.eq("userId", me),
-                    Restrictions.eq("friendId", u1)));
-            FriendList friendList = (FriendList) c2.uniqueResult();
-            responseObject.addProperty("responseStatus", Boolean.TRUE);
-            if (friendList == null) {
-                FriendList fl = new FriendList(me, u1, user.getFirstName() + " " + user.getLastName());
-                s.save(fl);
-                responseObject.addProperty("message", "This user added to friend list");
-            } else {
-                friendList.setDisplayName(user.getFirstName() + " " + user.getLastName());
-                s.update(friendList);
-                responseObject.addProperty("message", "This user already in friend list");
-            }
-        }
-        s.beginTransaction().commit();
-        s.close();
-        Map<String, Object> map = new HashMap<>();
-        map.put("type", "new_contact_response_text");
-        map.put("payload", responseObject);
-        return map;
-    }
-
-    public static Map<String, Object> getMyProfileData(int userId) {
-        Session s = HibernateUtil.getSessionFactory().openSession();
-        User user = (User) s.get(User.class, userId);
-        UserDTO dto = new UserDTO();
-        dto.setFirstName(user.getFirstName());
-        dto.setLastName(user.getLastName());
-        dto.setCountryCode(user.getCountryCode());
-        dto.setContactNo(user.getContactNo());
-        dto.setProfileImage(ProfileService.getProfileUrl(userId));
-
-        s.close();
-        Map<String, Object> map = new HashMap();
-        map.put("type", "user_profile");
-        map.put("payload", dto);
-        return map;
-    }
-}
+package socket;
+
+import com.google.gson.JsonObject;
+import dto.UserDTO;
+import entity.ChangeLog;
+import entity.Chat;
+import entity.FriendList;
+import entity.Status;
+import entity.User;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Restrictions;
+import util.HibernateUtil;
+
+public class UserService {
+
+    // Call @OnOpen
+    public static void updateLogInStatus(int userId) {
+        PresenceService.online(userId);
+    }
+
+    // Call @OnClose
+    public static void updateLogOutStatus(int userId) {
+        PresenceService.offline(userId);
+    }
+
+    // Call @OnOpen through FrameDispatcher, never on the handshake thread
+    public static void updateFriendChatStatus(int userId) {
+        if (!PresenceService.isOnline(userId)) {
+            return;
+        }
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        try {
+            Transaction tr = s.beginTransaction();
+            // newest pending message per sender, only from active friends
+            List<Object[]> pending = s.createQuery("SELECT c.from.id, MAX(c.id), COUNT(c.id) FROM Chat c"
+                    + " WHERE c.to.id = :userId AND c.status = :sent AND c.from.id IN"
+                    + " (SELECT f.friendId.id FROM FriendList f WHERE f.userId.id = :userId AND f.status = :active)"
+                    + " GROUP BY c.from.id")
+                    .setParameter("userId", userId)
+                    .setParameter("sent", Status.SENT)
+                    .setParameter("active", Status.ACTIVE)
+                    .list();
+            if (pending.isEmpty()) {
+                tr.commit();
+                return;
+            }
+
+            long maxId = 0;
+            for (Object[] row : pending) {
+                maxId = Math.max(maxId, ((Number) row[1]).longValue());
+            }
+            // one UPDATE for all senders, bounded so later arrivals keep their own receipt
+            s.createQuery("UPDATE Chat c SET c.status = :delivered, c.updatedAt = :now"
+                    + " WHERE c.to.id = :userId AND c.status = :sent AND c.id <= :maxId AND c.from.id IN"
+                    + " (SELECT f.friendId.id FROM FriendList f WHERE f.userId.id = :userId AND f.status = :active)")
+                    .setParameter("delivered", Status.DELIVERED)
+                    .setParameter("now", new Date())
+                    .setParameter("userId", userId)
+                    .setParameter("sent", Status.SENT)
+                    .setParameter("maxId", maxId)
+                    .setParameter("active", Status.ACTIVE)
+                    .executeUpdate();
+            for (Object[] row : pending) {
+                SyncService.record(s, ((Number) row[0]).intValue(), ChangeLog.Kind.DELIVERED, userId,
+                        ((Number) row[1]).longValue());
+            }
+            tr.commit();
+
+            for (Object[] row : pending) {
+                int senderId = ((Number) row[0]).intValue();
+                long lastId = ((Number) row[1]).longValue();
+                RecentChatCache.markDelivered(Chat.conversationOf(senderId, userId), userId, lastId);
+                ChatService.sendToUser(senderId, deliveredEnvelope(userId, lastId, ((Number) row[2]).intValue()));
+            }
+        } catch (HibernateException e) {
+            e.printStackTrace();
+        } finally {
+            s.close();
+        }
+    }
+
+    // One receipt per sender: everything it sent to recipientId up to lastDeliveredId arrived
+    public static Map<String, Object> deliveredEnvelope(int recipientId, long lastDeliveredId, int count) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("recipientId", recipientId);
+        payload.put("lastDeliveredId", lastDeliveredId);
+        payload.put("count", count);
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "delivered");
+        envelope.put("payload", payload);
+        return envelope;
+    }
+
+    public static Map<String, Object> getFriendData(int friendId) { // single chat header details
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        User friend = (User) s.get(User.class, friendId);
+        s.close();
+        if (friend == null) {
+            return null;
+        }
+        UserDTO dto = new UserDTO(); // header only needs name, presence and last seen
+        dto.setId(friend.getId());
+        dto.setFirstName(friend.getFirstName());
+        dto.setLastName(friend.getLastName());
+        dto.setStatus(friend.getStatus());
+        dto.setUpdatedAt(friend.getUpdatedAt());
+        if (PresenceService.getStatus(friendId) != null) { // newer than the row until the next flush
+            dto.setStatus(PresenceService.getStatus(friendId));
+            dto.setUpdatedAt(PresenceService.getLastSeen(friendId));
+        }
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("type", "friend_data");
+        envelope.put("payload", dto);
+        return envelope;
+    }
+
+    public static Map<String, Object> getAllUsers(int userId) {
+        try {
+            Session s = HibernateUtil.getSessionFactory().openSession();
+            Map<String, Object> map = new HashMap();
+            List<UserDTO> userDTOs = new ArrayList<>();
+
+            Criteria c1 = s.createCriteria(FriendList.class);
+            c1.add(Restrictions.eq("userId.id", userId));
+            c1.add(Restrictions.eq("status", Status.ACTIVE));
+            c1.setCacheable(true);
+            c1.setCacheRegion(HibernateUtil.FRIEND_LIST_QUERIES);
+            List<FriendList> myFriends = c1.list();
+
+            for (FriendList myFriend : myFriends) {
+                userDTOs.add(contactDTO(myFriend));
+            }
+            s.close();
+            map.put("type", "all_users");
+            map.put("payload", userDTOs);
+            return map;
+        } catch (HibernateException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // One entry of the contact list, as in all_users
+    public static UserDTO contactDTO(FriendList myFriend) {
+        User user = myFriend.getFriendId(); // User Object
+        UserDTO dto = new UserDTO();
+        dto.setId(user.getId());
+        dto.setFirstName(user.getFirstName());
+        dto.setLastName(user.getLastName());
+        dto.setDisplayName(myFriend.getDisplayName()); // From FriendList Table
+        dto.setCountryCode(user.getCountryCode());
+        dto.setContactNo(user.getContactNo());
+        dto.setProfileImage(ProfileService.getProfileUrl(user.getId(),
+                ProfileService.preferredSize(myFriend.getUserId().getId(), ProfileService.SMALL)));
+        dto.setCreatedAt(user.getCreatedAt());
+        dto.setUpdatedAt(user.getUpdatedAt());
+        dto.setStatus(user.getStatus());
+        if (PresenceService.getStatus(user.getId()) != null) {
+            dto.setStatus(PresenceService.getStatus(user.getId()));
+        }
+        return dto;
+    }
+
+    public static Map<String, Object> saveNewContact(int myId, User user) {
+        Session s = HibernateUtil.getSessionFactory().openSession();
+
+        JsonObject responseObject = new JsonObject();
+        responseObject.addProperty("responseStatus", Boolean.FALSE);
+        FriendList added = null;
+        Criteria c1 = s.createCriteria(User.class);
+        c1.add(Restrictions.and(Restrictions.eq("countryCode", user.getCountryCode()),
+                Restrictions.eq("contactNo", user.getContactNo())));
+        User u1 = (User) c1.uniqueResult();
+        if (u1 == null) {
+            responseObject.addProperty("message", "This user not in ChatApp");
+        } else {
+            User me = (User) s.get(User.class, myId);
+            //Check this user already added to the FriendList Tabele
+            Criteria c2 = s.createCriteria(FriendList.class);
+            c2.add(Restrictions.and(Restrictions.eq("userId", me),
+                    Restrictions.eq("friendId", u1)));
+            FriendList friendList = (FriendList) c2.uniqueResult();
+            responseObject.addProperty("responseStatus", Boolean.TRUE);
+            if (friendList == null) {
+                FriendList fl = new FriendList(me, u1, user.getFirstName() + " " + user.getLastName());
+                s.save(fl);
+                added = fl;
+                SyncService.record(s, myId, ChangeLog.Kind.CONTACT, u1.getId(), 0);
+                responseObject.addProperty("message", "This user added to friend list");
+            } else {
+                friendList.setDisplayName(user.getFirstName() + " " + user.getLastName());
+                s.update(friendList);
+                SyncService.record(s, myId, ChangeLog.Kind.CONTACT, u1.getId(), 0);
+                responseObject.addProperty("message", "This user already in friend list");
+            }
+        }
+        s.beginTransaction().commit();
+        s.close();
+        if (added != null) {
+            FriendGraph.add(myId, added.getFriendId().getId());
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", "new_contact_response_text");
+        map.put("payload", responseObject);
+        return map;
+    }
+
+    public static Map<String, Object> getMyProfileData(int userId) {
+        Session s = HibernateUtil.getSessionFactory().openSession();
+        User user = (User) s.get(User.class, userId);
+        UserDTO dto = new UserDTO();
+        dto.setFirstName(user.getFirstName());
+        dto.setLastName(user.getLastName());
+        dto.setCountryCode(user.getCountryCode());
+        dto.setContactNo(user.getContactNo());
+        dto.setProfileImage(ProfileService.getProfileUrl(userId, ProfileService.MEDIUM));
+
+        s.close();
+        Map<String, Object> map = new HashMap();
+        map.put("type", "user_profile");
+        map.put("payload", dto);
+        return map;
+    }
+}
@@ -0,0 +1,65 @@
+package socket;
+
+import dto.ChatDTO;
+import entity.Status;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tail ordering of RecentChatCache: a chat that a first page loaded before
+ * the sender's write-through arrives is kept once, and out of order appends
+ * still come back newest first. Run with plain java (in-memory router, the
+ * default, so the cache is on):
+ *
+ * java -cp build:... socket.RecentChatCacheTest
+ */
+public class RecentChatCacheTest {
+
+    public static void main(String[] args) {
+        long conversationId = 1;
+
+        // a reader's page committed after chat 11 but before the sender's append
+        RecentChatCache.load(conversationId, RecentChatCache.stamp(conversationId), Arrays.asList(chat(11), chat(10)), true);
+        RecentChatCache.append(conversationId, chat(11));
+        check(ids(RecentChatCache.firstPage(conversationId, 10)).equals(Arrays.asList(11L, 10L)), "load then append keeps one copy");
+
+        // two senders' acks racing
+        RecentChatCache.append(conversationId, chat(13));
+        RecentChatCache.append(conversationId, chat(12));
+        RecentChatCache.append(conversationId, chat(13));
+        check(ids(RecentChatCache.firstPage(conversationId, 10)).equals(Arrays.asList(13L, 12L, 11L, 10L)), "out of order appends");
+
+        RecentChatCache.remove(conversationId, 12);
+        check(ids(RecentChatCache.firstPage(conversationId, 10)).equals(Arrays.asList(13L, 11L, 10L)), "remove");
+        System.out.println("RecentChatCache tail OK");
+    }
+
+    private static ChatDTO chat(long id) {
+        ChatDTO chat = new ChatDTO();
+        chat.setId(id);
+        chat.setFromId(1);
+        chat.setToId(2);
+        chat.setMessage("m" + id);
+        chat.setFiles("");
+        chat.setStatus(Status.SENT);
+        return chat;
+    }
+
+    private static List<Long> ids(RecentChatCache.Page page) {
+        List<Long> ids = new ArrayList<>();
+        if (page != null) {
+            for (ChatDTO chat : page.rows) {
+                ids.add(chat.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            System.out.println("FAILED: " + what);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package socket;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback round trip of the TcpNodeChannel wire format: two channels on
+ * 127.0.0.1 exchange presence and DELIVER frames, and links that don't
+ * say a configured HELLO or that send an oversized body are dropped
+ * without reaching the listener. Hand-made links as a third configured
+ * node check that a silent link times out, that a replaced link doesn't
+ * report its node lost, and that resent DELIVER numbers are dropped.
+ * No framework needed, run with plain java:
+ *
+ * java -cp build:... socket.TcpNodeChannelTest
+ */
+public class TcpNodeChannelTest {
+
+    private static final int HEARTBEAT_MS = 200;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("chatify.router.heartbeatMs", Integer.toString(HEARTBEAT_MS));
+        int port1 = freePort();
+        int port2 = freePort();
+        Map<String, InetSocketAddress> peers = new LinkedHashMap<>();
+        peers.put("node1", new InetSocketAddress("127.0.0.1", port1));
+        peers.put("node2", new InetSocketAddress("127.0.0.1", port2));
+        // nothing listens for node3, the hand-made links below speak for it
+        peers.put("node3", new InetSocketAddress("127.0.0.1", freePort()));
+
+        Recorder one = new Recorder(Collections.singletonList(7));
+        Recorder two = new Recorder(Collections.emptyList());
+        TcpNodeChannel channel1 = new TcpNodeChannel("127.0.0.1", port1, peers);
+        TcpNodeChannel channel2 = new TcpNodeChannel("127.0.0.1", port2, peers);
+        channel1.start("node1", one);
+        channel2.start("node2", two);
+        try {
+            // node1 resends its local users on connect
+            check("node1 online 7 true".equals(two.next()), "presence snapshot on connect");
+
+            channel1.announce(42, true);
+            check("node1 online 42 true".equals(two.next()), "ONLINE");
+            channel1.announce(42, false);
+            check("node1 online 42 false".equals(two.next()), "OFFLINE");
+
+            String text = "{\"type\":\"new_message\",\"payload\":{\"message\":\"héllo 👋\"}}";
+            channel1.deliver("node2", 42, "new_message", text);
+            check(("deliver 42 new_message " + text).equals(two.next()), "DELIVER with UTF-8 body");
+            channel1.deliver("node2", 43, null, "{}");
+            check("deliver 43 null {}".equals(two.next()), "DELIVER without type");
+
+            // a stranger saying hello is cut off before anything it sends is read
+            try (Socket s = new Socket("127.0.0.1", port2)) {
+                DataOutputStream out = hello(s, "intruder", 1);
+                out.write(new byte[]{2, 0, 0, 0, 9}); // ONLINE 9
+                out.flush();
+                check(s.getInputStream().read() == -1, "unknown peer disconnected");
+            }
+            // a known peer id announcing a huge body is dropped instead of allocating it
+            try (Socket s = new Socket("127.0.0.1", port2)) {
+                DataOutputStream out = hello(s, "node3", 1);
+                out.writeByte(4); // DELIVER
+                out.writeLong(1);
+                out.writeInt(5);
+                out.writeUTF("x");
+                out.writeInt(Integer.MAX_VALUE);
+                out.flush();
+                check(s.getInputStream().read() == -1, "oversized body disconnected");
+            }
+            check("lost node3".equals(two.next()), "oversized link reported as lost");
+
+            // a link that stops sending (no heartbeat) is closed after three missed ones
+            try (Socket s = new Socket("127.0.0.1", port2)) {
+                hello(s, "node3", 1).flush();
+                long start = System.currentTimeMillis();
+                check(s.getInputStream().read() == -1, "silent link closed");
+                check(System.currentTimeMillis() - start >= HEARTBEAT_MS * 2, "not before the read timeout");
+            }
+            check("lost node3".equals(two.next()), "silent link reported as lost");
+
+            // node3 reconnects while its old link is still open: presence is reset once, the old link's close says nothing,
+            // and DELIVER numbers already seen on the old link are dropped when resent
+            try (Socket first = new Socket("127.0.0.1", port2); Socket second = new Socket("127.0.0.1", port2)) {
+                DataOutputStream out1 = hello(first, "node3", 7);
+                out1.write(new byte[]{2, 0, 0, 0, 5}); // ONLINE 5
+                deliver(out1, 1, 50, "{\"n\":1}");
+                out1.flush();
+                check("node3 online 5 true".equals(two.next()), "presence on the first link");
+                check("deliver 50 t {\"n\":1}".equals(two.next()), "DELIVER 1 on the first link");
+
+                DataOutputStream out2 = hello(second, "node3", 7);
+                out2.flush();
+                check("lost node3".equals(two.next()), "reconnect resets the node's presence");
+                check(first.getInputStream().read() == -1, "replaced link closed");
+                deliver(out2, 1, 50, "{\"n\":1}"); // resent after the reconnect
+                deliver(out2, 2, 50, "{\"n\":2}");
+                out2.write(new byte[]{2, 0, 0, 0, 6}); // ONLINE 6
+                out2.flush();
+                check("deliver 50 t {\"n\":2}".equals(two.next()), "resent DELIVER dropped, the next one passed on");
+                check("node3 online 6 true".equals(two.next()), "no lost node3 from the replaced link");
+            }
+            check("lost node3".equals(two.next()), "current link reported as lost");
+            check(two.events.poll(HEARTBEAT_MS * 4, TimeUnit.MILLISECONDS) == null, "nothing else reached the listener");
+        } finally {
+            channel1.close();
+            channel2.close();
+        }
+        System.out.println("TcpNodeChannel round trip OK");
+    }
+
+    private static DataOutputStream hello(Socket s, String nodeId, long epoch) throws IOException {
+        DataOutputStream out = new DataOutputStream(s.getOutputStream());
+        out.writeByte(1); // HELLO
+        out.writeUTF(nodeId);
+        out.writeLong(epoch);
+        return out;
+    }
+
+    private static void deliver(DataOutputStream out, long seq, int userId, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(4); // DELIVER
+        out.writeLong(seq);
+        out.writeInt(userId);
+        out.writeUTF("t");
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            System.out.println("FAILED: " + what);
+            System.exit(1);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private static class Recorder implements NodeChannel.Listener {
+
+        private final LinkedBlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final List<Integer> local;
+
+        Recorder(List<Integer> local) {
+            this.local = local;
+        }
+
+        String next() throws InterruptedException {
+            return events.poll(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onDeliver(int userId, String type, String text) {
+            events.add("deliver " + userId + " " + type + " " + text);
+        }
+
+        @Override
+        public void onPresence(String nodeId, int userId, boolean online) {
+            events.add(nodeId + " online " + userId + " " + online);
+        }
+
+        @Override
+        public void onNodeLost(String nodeId) {
+            events.add("lost " + nodeId);
+        }
+
+        @Override
+        public List<Integer> localUsers() {
+            return local;
+        }
+    }
+}
@@ -1,28 +1,64 @@
-package util;
-
-import org.hibernate.SessionFactory;
-import org.hibernate.cfg.Configuration;
-
-public class HibernateUtil {
-
-    private static final SessionFactory sessionFactory;
-
-    static {
-        try {
-            Configuration configure = new Configuration();
-            configure.configure("hibernate.cfg.xml");
-            sessionFactory = configure.buildSessionFactory();
-        } catch (Throwable ex) {
-            System.err.println("Initial SessionFactory creation failed." + ex);
-            throw new ExceptionInInitializerError(ex);
-        }
-    }
-
-    public static SessionFactory getSessionFactory() {
-        return sessionFactory;
-    }
-
-    public static void shutdown() {
-        getSessionFactory().close();
-    }
-}
+package util;
+
+import entity.User;
+import java.util.HashMap;
+import java.util.Map;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+public class HibernateUtil {
+
+    // Second-level cache regions, sized in ehcache.xml
+    public static final String USER_REGION = "user";
+    public static final String FRIEND_LIST_REGION = "friendList";
+    public static final String FRIEND_LIST_QUERIES = "friendListQuery";
+
+    private static final SessionFactory sessionFactory;
+
+    static {
+        try {
+            Configuration configure = new Configuration();
+            configure.configure("hibernate.cfg.xml");
+            sessionFactory = configure.buildSessionFactory();
+        } catch (Throwable ex) {
+            System.err.println("Initial SessionFactory creation failed." + ex);
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    public static SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    // For writes that bypass the session (plain JDBC), otherwise Hibernate keeps the cache current
+    public static void evictUser(int userId) {
+        getSessionFactory().getCache().evictEntityData(User.class, userId);
+    }
+
+    public static Map<String, Object> getCacheStats() {
+        Statistics statistics = getSessionFactory().getStatistics();
+        Map<String, Object> stats = new HashMap<>();
+        for (String region : new String[]{USER_REGION, FRIEND_LIST_REGION, FRIEND_LIST_QUERIES}) {
+            CacheRegionStatistics r = statistics.getCacheRegionStatistics(region);
+            if (r == null) {
+                continue; // region not built yet
+            }
+            Map<String, Object> m = new HashMap<>();
+            long hits = r.getHitCount();
+            long misses = r.getMissCount();
+            m.put("hits", hits);
+            m.put("misses", misses);
+            m.put("puts", r.getPutCount());
+            m.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+            m.put("entries", r.getElementCountInMemory());
+            stats.put(region, m);
+        }
+        return stats;
+    }
+
+    public static void shutdown() {
+        getSessionFactory().close();
+    }
+}
@@ -0,0 +1,73 @@
+package util;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Time-ordered ids made in the application: milliseconds since EPOCH, then
+ * the node id, then a per-millisecond sequence. Ids from one node always
+ * increase, ids from different nodes sort by creation time to the
+ * millisecond, so an id is also a history cursor.
+ *
+ * The layout is kept to 53 bits (41 time + 5 node + 7 sequence) so the ids
+ * stay exact as JavaScript numbers on the client: about 69 years, 32 nodes
+ * and 128 ids per millisecond per node.
+ *
+ * -Dchatify.id.node=0..31 must be unique per node. A single node may leave
+ * it unset (random then); with -Dchatify.router=tcp it is required.
+ */
+public class SnowflakeIdGenerator implements IdentifierGenerator {
+
+    // 2024-01-01T00:00:00Z
+    public static final long EPOCH = 1704067200000L;
+
+    private static final int NODE_BITS = 5;
+    private static final int SEQUENCE_BITS = 7;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private static final Long CONFIGURED_NODE = Long.getLong("chatify.id.node");
+    private static final long NODE = (CONFIGURED_NODE != null ? CONFIGURED_NODE
+            : ThreadLocalRandom.current().nextLong(MAX_NODE + 1)) & MAX_NODE;
+
+    private static long lastTime = -1;
+    private static long sequence;
+
+    public static synchronized long next() {
+        long now = System.currentTimeMillis() - EPOCH;
+        if (now > lastTime) {
+            lastTime = now;
+            sequence = 0;
+        } else if (++sequence > MAX_SEQUENCE) {
+            // sequence used up (or the clock went back): borrow the next millisecond
+            lastTime++;
+            sequence = 0;
+        }
+        return (lastTime << (NODE_BITS + SEQUENCE_BITS)) | (NODE << SEQUENCE_BITS) | sequence;
+    }
+
+    // For MessageRouter: with more than one node a random node id collides 1 in 32, so it has to be set
+    public static void requireConfiguredNode() {
+        if (CONFIGURED_NODE == null || CONFIGURED_NODE < 0 || CONFIGURED_NODE > MAX_NODE) {
+            throw new IllegalStateException("-Dchatify.id.node=0.." + MAX_NODE
+                    + " must be set, unique per node, when chats are routed between nodes");
+        }
+    }
+
+    // Creation time of an id, in epoch milliseconds
+    public static long timeOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    // Lowest id that can be made at epochMillis, for "everything since" comparisons
+    public static long floor(long epochMillis) {
+        return Math.max(0, epochMillis - EPOCH) << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return next();
+    }
+}